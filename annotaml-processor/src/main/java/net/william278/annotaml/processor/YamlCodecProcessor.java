@@ -0,0 +1,350 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Generates a reflection-free {@code YamlCodec} for each {@code @YamlFile}-annotated class
+ * <p>
+ * A codec is only generated when every mapped field can be read and written directly from the same package: the
+ * class, its mapped fields, their types and its zero-argument constructor must not be private, and mapped fields must
+ * not be final. Other classes are skipped with a note, and fall back to reflection at runtime.
+ */
+@SupportedAnnotationTypes(YamlCodecProcessor.YAML_FILE)
+public class YamlCodecProcessor extends AbstractProcessor {
+
+    static final String YAML_FILE = "net.william278.annotaml.YamlFile";
+    private static final String YAML_KEY = "net.william278.annotaml.YamlKey";
+    private static final String YAML_COMMENT = "net.william278.annotaml.YamlComment";
+    private static final String YAML_IGNORED = "net.william278.annotaml.YamlIgnored";
+    private static final String YAML_COMPACT = "net.william278.annotaml.YamlCompact";
+    private static final String YAML_CODEC = "net.william278.annotaml.YamlCodec";
+    private static final String CODEC_SUFFIX = "_YamlCodec";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final TypeElement yamlFile = processingEnv.getElementUtils().getTypeElement(YAML_FILE);
+        if (yamlFile == null) {
+            return false;
+        }
+        for (final Element element : roundEnv.getElementsAnnotatedWith(yamlFile)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                continue;
+            }
+            final TypeElement type = (TypeElement) element;
+            final Optional<String> unsupported = validate(type);
+            if (unsupported.isPresent()) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Not generating a codec for "
+                        + type.getQualifiedName() + " (" + unsupported.get() + "); it will be mapped by reflection", type);
+                continue;
+            }
+            try {
+                generate(type);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Unable to write codec for " + type.getQualifiedName() + ": " + e.getMessage(), type);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check that a codec with direct field access can be generated for a class
+     *
+     * @param type The class to check
+     * @return The reason a codec cannot be generated, if any
+     */
+    private Optional<String> validate(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return Optional.of("abstract class");
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            return Optional.of("generic class");
+        }
+        for (Element enclosing = type; enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+                return Optional.of("private class");
+            }
+            if (enclosing.getEnclosingElement() instanceof TypeElement
+                    && !enclosing.getModifiers().contains(Modifier.STATIC)) {
+                return Optional.of("inner class");
+            }
+        }
+        final boolean constructor = ElementFilter.constructorsIn(type.getEnclosedElements()).stream()
+                .anyMatch(c -> c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE));
+        if (!constructor) {
+            return Optional.of("no non-private zero-argument constructor");
+        }
+        for (final VariableElement field : getMappedFields(type)) {
+            if (field.getModifiers().contains(Modifier.PRIVATE)) {
+                return Optional.of("private field " + field.getSimpleName());
+            }
+            if (field.getModifiers().contains(Modifier.FINAL)) {
+                return Optional.of("final field " + field.getSimpleName());
+            }
+            if (!isAccessible(field.asType())) {
+                return Optional.of("field " + field.getSimpleName() + " has a private type");
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Check that a type can be named from outside its declaring class
+     *
+     * @param mirror The type to check
+     * @return If the type is not private, nor nested within a private type
+     */
+    private boolean isAccessible(TypeMirror mirror) {
+        final TypeMirror erased = processingEnv.getTypeUtils().erasure(mirror);
+        if (erased.getKind() == TypeKind.ARRAY) {
+            return isAccessible(((ArrayType) erased).getComponentType());
+        }
+        if (erased.getKind() != TypeKind.DECLARED) {
+            return erased.getKind().isPrimitive();
+        }
+        for (Element element = ((DeclaredType) erased).asElement(); element instanceof TypeElement;
+             element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the fields of a class that are mapped to keys, in declaration order
+     *
+     * @param type The class to get the fields of
+     * @return The fields not annotated with {@code @YamlIgnored}; only the first for rooted maps
+     */
+    private List<VariableElement> getMappedFields(TypeElement type) {
+        final List<VariableElement> fields = ElementFilter.fieldsIn(type.getEnclosedElements()).stream()
+                .filter(field -> getAnnotation(field, YAML_IGNORED).isEmpty())
+                .collect(Collectors.toList());
+        return isRootedMap(type) && !fields.isEmpty() ? fields.subList(0, 1) : fields;
+    }
+
+    private boolean isRootedMap(TypeElement type) {
+        return getAnnotationValue(type, YAML_FILE, "rootedMap").map(Boolean.class::cast).orElse(false);
+    }
+
+    /**
+     * Write the codec source file of a class
+     *
+     * @param type The class to write the codec of
+     * @throws IOException If the source file could not be written
+     */
+    private void generate(TypeElement type) throws IOException {
+        final Elements elements = processingEnv.getElementUtils();
+        final Types types = processingEnv.getTypeUtils();
+        final String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        final String typeName = type.getQualifiedName().toString();
+        final String codecName = elements.getBinaryName(type).toString()
+                .substring(packageName.isEmpty() ? 0 : packageName.length() + 1)
+                .replace('$', '_') + CODEC_SUFFIX;
+
+        final boolean rootedMap = isRootedMap(type);
+        final String header = getAnnotationValue(type, YAML_FILE, "header").map(String.class::cast).orElse("");
+        final List<VariableElement> fields = getMappedFields(type);
+
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(
+                packageName.isEmpty() ? codecName : packageName + "." + codecName, type).openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+            out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            out.println("public final class " + codecName + " implements " + YAML_CODEC + "<" + typeName + "> {");
+            out.println();
+            out.println("    private static final String[] NAMES = {" + fields.stream()
+                    .map(field -> literal(field.getSimpleName().toString()))
+                    .collect(Collectors.joining(", ")) + "};");
+            out.println("    private static final String[] KEYS = {" + fields.stream()
+                    .map(field -> literal(rootedMap ? "" : getAnnotationValue(field, YAML_KEY, "value")
+                            .map(String.class::cast).orElse(field.getSimpleName().toString())))
+                    .collect(Collectors.joining(", ")) + "};");
+            out.println("    private static final String[] COMMENTS = {" + fields.stream()
+                    .map(field -> getAnnotationValue(field, YAML_COMMENT, "value")
+                            .map(value -> literal((String) value)).orElse("null"))
+                    .collect(Collectors.joining(", ")) + "};");
+            out.println("    private static final Class<?>[] TYPES = {" + fields.stream()
+                    .map(field -> erasedName(field.asType()) + ".class")
+                    .collect(Collectors.joining(", ")) + "};");
+            out.println("    private static final boolean[] COMPACT = {" + fields.stream()
+                    .map(field -> String.valueOf(getAnnotation(field, YAML_COMPACT).isPresent()))
+                    .collect(Collectors.joining(", ")) + "};");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Class<" + typeName + "> getObjectClass() {");
+            out.println("        return " + typeName + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public String getHeader() {");
+            out.println("        return " + literal(header) + ";");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public boolean isRootedMap() {");
+            out.println("        return " + rootedMap + ";");
+            out.println("    }");
+            out.println();
+            for (final String array : List.of("FieldNames:NAMES:String[]", "Keys:KEYS:String[]",
+                    "Comments:COMMENTS:String[]", "FieldTypes:TYPES:Class<?>[]", "CompactFields:COMPACT:boolean[]")) {
+                final String[] parts = array.split(":");
+                out.println("    @Override");
+                out.println("    public " + parts[2] + " get" + parts[0] + "() {");
+                out.println("        return " + parts[1] + ".clone();");
+                out.println("    }");
+                out.println();
+            }
+            out.println("    @Override");
+            out.println("    public " + typeName + " instantiate() {");
+            out.println("        return new " + typeName + "();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Object get(" + typeName + " object, int field) {");
+            out.println("        switch (field) {");
+            for (int i = 0; i < fields.size(); i++) {
+                out.println("            case " + i + ":");
+                out.println("                return " + target(type, fields.get(i)) + ";");
+            }
+            out.println("            default:");
+            out.println("                throw new IndexOutOfBoundsException(\"No mapped field at index \" + field);");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void set(" + typeName + " object, int field, Object value) {");
+            out.println("        switch (field) {");
+            for (int i = 0; i < fields.size(); i++) {
+                final TypeMirror fieldType = fields.get(i).asType();
+                final String cast = fieldType.getKind().isPrimitive()
+                        ? types.boxedClass(types.getPrimitiveType(fieldType.getKind())).getQualifiedName().toString()
+                        : erasedName(fieldType);
+                out.println("            case " + i + ":");
+                out.println("                " + target(type, fields.get(i)) + " = (" + cast + ") value;");
+                out.println("                return;");
+            }
+            out.println("            default:");
+            out.println("                throw new IndexOutOfBoundsException(\"No mapped field at index \" + field);");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+
+            // Typed setters write primitive fields without boxing their values
+            for (final TypeKind kind : List.of(TypeKind.INT, TypeKind.LONG, TypeKind.DOUBLE, TypeKind.FLOAT,
+                    TypeKind.BOOLEAN)) {
+                final String primitive = kind.name().toLowerCase(Locale.ROOT);
+                if (fields.stream().noneMatch(field -> field.asType().getKind() == kind)) {
+                    continue;
+                }
+                out.println("    @Override");
+                out.println("    public void set" + Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1)
+                        + "(" + typeName + " object, int field, " + primitive + " value) {");
+                out.println("        switch (field) {");
+                for (int i = 0; i < fields.size(); i++) {
+                    if (fields.get(i).asType().getKind() == kind) {
+                        out.println("            case " + i + ":");
+                        out.println("                " + target(type, fields.get(i)) + " = value;");
+                        out.println("                return;");
+                    }
+                }
+                out.println("            default:");
+                out.println("                set(object, field, value);");
+                out.println("        }");
+                out.println("    }");
+                out.println();
+            }
+            out.println("}");
+        }
+    }
+
+    /**
+     * Get the source name of the erasure of a type, without any type annotations
+     *
+     * @param mirror The type to name
+     * @return The qualified name of the erased type
+     */
+    private String erasedName(TypeMirror mirror) {
+        final TypeMirror erased = processingEnv.getTypeUtils().erasure(mirror);
+        if (erased.getKind() == TypeKind.ARRAY) {
+            return erasedName(((ArrayType) erased).getComponentType()) + "[]";
+        }
+        if (erased.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) ((DeclaredType) erased).asElement()).getQualifiedName().toString();
+        }
+        return erased.getKind().name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Get the expression to access a field of the object
+     *
+     * @param type  The class declaring the field
+     * @param field The field
+     * @return {@code object.field}, or {@code Type.field} for static fields
+     */
+    private String target(TypeElement type, VariableElement field) {
+        return (field.getModifiers().contains(Modifier.STATIC) ? type.getQualifiedName().toString() : "object")
+                + "." + field.getSimpleName();
+    }
+
+    private String literal(String value) {
+        return processingEnv.getElementUtils().getConstantExpression(value);
+    }
+
+    private Optional<? extends AnnotationMirror> getAnnotation(Element element, String annotation) {
+        return element.getAnnotationMirrors().stream()
+                .filter(mirror -> ((TypeElement) mirror.getAnnotationType().asElement())
+                        .getQualifiedName().contentEquals(annotation))
+                .findFirst();
+    }
+
+    private Optional<Object> getAnnotationValue(Element element, String annotation, String name) {
+        return getAnnotation(element, annotation).flatMap(mirror -> mirror.getElementValues().entrySet().stream()
+                .filter(entry -> entry.getKey().getSimpleName().contentEquals(name))
+                .map(entry -> entry.getValue().getValue())
+                .findFirst());
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading, materializing and writing a {@link YamlFile} with typed fields and a map of generated entries
+ * <p>
+ * Run with {@code ./gradlew jmh}; the GC profiler is enabled, so {@code gc.alloc.rate.norm} reports the bytes
+ * allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnnotamlBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int keyCount;
+
+    @Param({"1", "4"})
+    public int depth;
+
+    @Param({"STRING", "INTEGER", "DOUBLE", "LIST"})
+    public BenchmarkData.ValueType valueType;
+
+    private byte[] yaml;
+    private Annotaml<BenchmarkFile> annotaml;
+    private YamlObjectMap<BenchmarkFile> map;
+    private Path unchanged;
+
+    @Setup
+    public void setup() throws IOException {
+        final BenchmarkFile object = new BenchmarkFile();
+        object.entries = BenchmarkData.entries(keyCount, depth, valueType);
+        annotaml = Annotaml.create(object);
+        map = annotaml.getYamlObjectMap();
+        yaml = map.toBytes();
+
+        unchanged = Files.createTempFile("annotaml-benchmark", ".yml");
+        map.save(unchanged.toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(unchanged);
+    }
+
+    @Benchmark
+    public Annotaml<BenchmarkFile> create() throws IOException {
+        return Annotaml.create(new BenchmarkFile(), new ByteArrayInputStream(yaml));
+    }
+
+    @Benchmark
+    public BenchmarkFile get() throws ReflectiveOperationException {
+        return annotaml.get();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return map.toBytes();
+    }
+
+    @Benchmark
+    public void save(SaveTarget target) throws IOException {
+        map.save(target.file.toFile());
+    }
+
+    /**
+     * Saves a file that already has the contents being saved, which is skipped after hashing them
+     */
+    @Benchmark
+    public void saveUnchanged() throws IOException {
+        map.save(unchanged.toFile());
+    }
+
+    /**
+     * A file that is deleted before each save, so that saves are never skipped as unchanged
+     */
+    @State(Scope.Thread)
+    public static class SaveTarget {
+
+        Path file;
+
+        @Setup(Level.Trial)
+        public void create() throws IOException {
+            file = Files.createTempFile("annotaml-benchmark", ".yml");
+        }
+
+        @Setup(Level.Invocation)
+        public void delete() throws IOException {
+            Files.deleteIfExists(file);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the maps of entries that benchmarks read and write
+ */
+final class BenchmarkData {
+
+    private static final int BRANCHING = 16;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * The type of the values of generated entries
+     */
+    enum ValueType {
+        STRING,
+        INTEGER,
+        DOUBLE,
+        LIST;
+
+        @NotNull
+        Object value(int index) {
+            switch (this) {
+                case INTEGER:
+                    return index;
+                case DOUBLE:
+                    return index + 0.5;
+                case LIST:
+                    return List.of("value" + index, "value" + (index + 1));
+                default:
+                    return "value " + index;
+            }
+        }
+    }
+
+    /**
+     * Generate a map of entries, nested in sections to a depth
+     *
+     * @param keyCount  The number of entries to generate
+     * @param depth     The depth to nest entries at; {@code 1} for a flat map
+     * @param valueType The type of the values of the entries
+     * @return The map of entries
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> entries(int keyCount, int depth, @NotNull ValueType valueType) {
+        final Map<String, Object> root = new LinkedHashMap<>();
+        for (int i = 0; i < keyCount; i++) {
+            Map<String, Object> parent = root;
+            int section = i;
+            for (int level = 1; level < depth; level++) {
+                parent = (Map<String, Object>) parent.computeIfAbsent("section" + (section % BRANCHING),
+                        key -> new LinkedHashMap<>());
+                section /= BRANCHING;
+            }
+            parent.put("key" + i, valueType.value(i));
+        }
+        return root;
+    }
+
+    /**
+     * A rooted map fixture
+     */
+    interface RootedFixture {
+
+        @NotNull
+        Map<String, Object> getEntries();
+
+    }
+
+}
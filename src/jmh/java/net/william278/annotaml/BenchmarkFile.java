@@ -0,0 +1,46 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@YamlFile(header = "Benchmark fixture with typed fields and a map of generated entries")
+public class BenchmarkFile {
+
+    public String name = "benchmark";
+    public int port = 25565;
+    public long seed = 278L;
+    public double ratio = 0.75;
+    public Mode mode = Mode.BALANCED;
+    public List<String> tags = List.of("first", "second");
+    public Map<String, Object> entries = new LinkedHashMap<>();
+
+    public BenchmarkFile() {
+    }
+
+    public enum Mode {
+        FAST,
+        BALANCED,
+        THOROUGH
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the footprint and lookups of a {@link CompactMap} against a {@link LinkedHashMap}
+ * <p>
+ * {@link #copy()} allocates exactly the structure the copied map retains, so its {@code gc.alloc.rate.norm} from the
+ * GC profiler divided by {@code keyCount} is the number of bytes each entry costs, excluding the keys and values
+ * themselves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompactMapBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int keyCount;
+
+    @Param({"LINKED", "COMPACT"})
+    public Layout layout;
+
+    private Map<String, Object> entries;
+    private Map<String, Object> map;
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        entries = BenchmarkData.entries(keyCount, 1, BenchmarkData.ValueType.STRING);
+        map = copy();
+        keys = entries.keySet().toArray(new String[0]);
+    }
+
+    @Benchmark
+    public Map<String, Object> copy() {
+        return layout == Layout.COMPACT ? CompactMap.copyOf(entries) : new LinkedHashMap<>(entries);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(64)
+    public int lookup() {
+        int found = 0;
+        for (int i = 0; i < 64; i++) {
+            if (map.get(keys[(i * 7919) % keys.length]) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The map implementation being measured
+     */
+    public enum Layout {
+        LINKED,
+        COMPACT
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks converting values read from YAML to the type of the field they are written to, as
+ * {@link YamlObjectMap} does for each field when materializing an object
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConversionBenchmark {
+
+    @Param({"INT_FROM_INTEGER", "LONG_FROM_INTEGER", "DOUBLE_FROM_INTEGER", "FLOAT_FROM_DOUBLE", "ENUM_FROM_STRING",
+            "STRING"})
+    public Conversion conversion;
+
+    private YamlClassModel.FieldModel field;
+
+    @Setup
+    public void setup() {
+        field = YamlClassModel.of(ConversionFile.class).getFields().stream()
+                .filter(model -> model.getName().equals(conversion.field))
+                .findFirst().orElseThrow();
+    }
+
+    @Benchmark
+    public Object write(ConversionTarget state) throws IllegalAccessException {
+        if (!field.getConverter(conversion.value.getClass()).write(field.getAccessor(), state.target,
+                conversion.value)) {
+            throw new IllegalStateException("Unable to convert " + conversion.value);
+        }
+        return state.target;
+    }
+
+    /**
+     * The object the converted values are written to
+     */
+    @State(Scope.Thread)
+    public static class ConversionTarget {
+
+        final ConversionFile target = new ConversionFile();
+
+    }
+
+    /**
+     * A conversion from a value class to a field type
+     */
+    public enum Conversion {
+        INT_FROM_INTEGER("intValue", 42),
+        LONG_FROM_INTEGER("longValue", 42),
+        DOUBLE_FROM_INTEGER("doubleValue", 42),
+        FLOAT_FROM_DOUBLE("floatValue", 0.5),
+        ENUM_FROM_STRING("mode", "THOROUGH"),
+        STRING("name", "benchmark");
+
+        private final String field;
+        private final Object value;
+
+        Conversion(String field, Object value) {
+            this.field = field;
+            this.value = value;
+        }
+    }
+
+    @YamlFile(header = "Benchmark fixture with a field of each converted type")
+    public static class ConversionFile {
+
+        public int intValue;
+        public long longValue;
+        public double doubleValue;
+        public float floatValue;
+        public BenchmarkFile.Mode mode = BenchmarkFile.Mode.FAST;
+        public String name = "";
+
+        public ConversionFile() {
+        }
+
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks getting and setting mapped fields through the {@link java.lang.invoke.MethodHandle} accessor Annotaml
+ * uses by default, against the reflective accessor it falls back to for fields it cannot get handles for
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FieldAccessBenchmark {
+
+    @Param({"HANDLES", "REFLECTION"})
+    public Access access;
+
+    private FieldAccessor intAccessor;
+    private FieldAccessor stringAccessor;
+
+    @Setup
+    public void setup() throws NoSuchFieldException {
+        intAccessor = access.create(AccessTarget.class.getDeclaredField("intValue"));
+        stringAccessor = access.create(AccessTarget.class.getDeclaredField("name"));
+    }
+
+    @Benchmark
+    public int getInt(AccessTarget target) throws IllegalAccessException {
+        return intAccessor.getInt(target);
+    }
+
+    @Benchmark
+    public AccessTarget setInt(AccessTarget target) throws IllegalAccessException {
+        intAccessor.setInt(target, 42);
+        return target;
+    }
+
+    @Benchmark
+    public Object get(AccessTarget target) throws IllegalAccessException {
+        return stringAccessor.get(target);
+    }
+
+    @Benchmark
+    public AccessTarget set(AccessTarget target) throws IllegalAccessException {
+        stringAccessor.set(target, "benchmark");
+        return target;
+    }
+
+    /**
+     * The object whose fields are accessed
+     */
+    @State(Scope.Thread)
+    public static class AccessTarget {
+
+        public int intValue = 25565;
+        public String name = "";
+
+    }
+
+    /**
+     * The kind of accessor used
+     */
+    public enum Access {
+        HANDLES,
+        REFLECTION;
+
+        private FieldAccessor create(Field field) {
+            return this == HANDLES ? Objects.requireNonNull(FieldAccessor.ofHandles(field))
+                    : FieldAccessor.ofReflection(field);
+        }
+    }
+
+}
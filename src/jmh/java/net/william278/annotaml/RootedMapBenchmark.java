@@ -0,0 +1,127 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks loading, looking up and saving rooted maps from files, as a {@link java.util.LinkedHashMap}, a
+ * {@link CompactMap} or a lazily read map
+ * <p>
+ * Files of 100,000 or more keys are several megabytes, and so are memory-mapped when indexed for the lazy layout;
+ * {@link #read()} measures reading the file alone, as each layout reads it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RootedMapBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int keyCount;
+
+    @Param({"1", "4"})
+    public int depth;
+
+    @Param({"STRING", "INTEGER", "DOUBLE", "LIST"})
+    public BenchmarkData.ValueType valueType;
+
+    @Param({"LINKED", "COMPACT", "LAZY"})
+    public Layout layout;
+
+    private Path file;
+    private Map<String, Object> loaded;
+    private String lookupKey;
+    private YamlObjectMap<?> map;
+
+    @Setup
+    public void setup() throws IOException, ReflectiveOperationException {
+        final BenchmarkMapFile object = new BenchmarkMapFile();
+        object.entries = BenchmarkData.entries(keyCount, depth, valueType);
+        file = Files.createTempFile("annotaml-benchmark", ".yml");
+        Annotaml.create(object).save(file.toFile());
+
+        loaded = load().getEntries();
+        lookupKey = loaded.keySet().stream().skip(loaded.size() / 2).findFirst().orElseThrow();
+        map = Annotaml.create(load()).getYamlObjectMap();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public BenchmarkData.RootedFixture load() throws IOException, ReflectiveOperationException {
+        return Annotaml.create(file, layout.fixture).get();
+    }
+
+    @Benchmark
+    public Object lookup() {
+        return loaded.get(lookupKey);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return map.toBytes();
+    }
+
+    @Benchmark
+    public void save(AnnotamlBenchmark.SaveTarget target) throws IOException {
+        map.save(target.file.toFile());
+    }
+
+    /**
+     * Read the file and scan every byte of it, so that mapped pages are faulted in
+     */
+    @Benchmark
+    public int read() throws IOException {
+        final ByteBuffer buffer = layout == Layout.LAZY ? FileInput.map(file) : FileInput.read(file);
+        int lines = 0;
+        while (buffer.hasRemaining()) {
+            if (buffer.get() == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * The layout of the loaded rooted map
+     */
+    public enum Layout {
+        LINKED(BenchmarkMapFile.class),
+        COMPACT(BenchmarkCompactMapFile.class),
+        LAZY(BenchmarkLazyMapFile.class);
+
+        private final Class<? extends BenchmarkData.RootedFixture> fixture;
+
+        Layout(Class<? extends BenchmarkData.RootedFixture> fixture) {
+            this.fixture = fixture;
+        }
+    }
+
+}
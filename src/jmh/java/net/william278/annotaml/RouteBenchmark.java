@@ -0,0 +1,180 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package net.william278.annotaml;
+
+import dev.dejvokep.boostedyaml.YamlDocument;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks looking up the values of fields with dotted {@link YamlKey} paths, comparing routes parsed from the key on
+ * every lookup with the route precompiled for each field, and reading a whole file of such fields
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RouteBenchmark {
+
+    @Param({"SHALLOW", "DEEP"})
+    public Layout layout;
+
+    private byte[] yaml;
+    private YamlDocument document;
+    private List<YamlClassModel.FieldModel> fields;
+
+    @Setup
+    public void setup() throws IOException, ReflectiveOperationException {
+        final Object defaults = layout.fileClass.getConstructor().newInstance();
+        yaml = Annotaml.create(defaults).getYamlObjectMap().toBytes();
+        document = YamlDocument.create(new ByteArrayInputStream(yaml));
+        fields = YamlClassModel.of(layout.fileClass).getFields();
+    }
+
+    @Benchmark
+    public Object lookupString() {
+        Object value = null;
+        for (final YamlClassModel.FieldModel field : fields) {
+            value = document.get(field.getKey());
+        }
+        return value;
+    }
+
+    @Benchmark
+    public Object lookupRoute() {
+        Object value = null;
+        for (final YamlClassModel.FieldModel field : fields) {
+            value = document.get(field.getRoute());
+        }
+        return value;
+    }
+
+    @Benchmark
+    public Object read() throws IOException, ReflectiveOperationException {
+        return Annotaml.create(layout.fileClass, new ByteArrayInputStream(yaml)).get();
+    }
+
+    /**
+     * The nesting of the keys of the fixture
+     */
+    public enum Layout {
+        SHALLOW(ShallowRouteFile.class),
+        DEEP(DeepRouteFile.class);
+
+        private final Class<?> fileClass;
+
+        Layout(Class<?> fileClass) {
+            this.fileClass = fileClass;
+        }
+    }
+
+    @YamlFile(header = "Benchmark fixture with keys nested two levels deep")
+    public static class ShallowRouteFile {
+
+        @YamlKey("primary.host")
+        public String primaryHost = "localhost";
+
+        @YamlKey("primary.port")
+        public int primaryPort = 25565;
+
+        @YamlKey("primary.timeout")
+        public long primaryTimeout = 30000L;
+
+        @YamlKey("primary.retries")
+        public int primaryRetries = 3;
+
+        @YamlKey("primary.enabled")
+        public boolean primaryEnabled = true;
+
+        @YamlKey("primary.ratio")
+        public double primaryRatio = 0.75;
+
+        @YamlKey("fallback.host")
+        public String fallbackHost = "localhost";
+
+        @YamlKey("fallback.port")
+        public int fallbackPort = 25565;
+
+        @YamlKey("fallback.timeout")
+        public long fallbackTimeout = 30000L;
+
+        @YamlKey("fallback.retries")
+        public int fallbackRetries = 3;
+
+        @YamlKey("fallback.enabled")
+        public boolean fallbackEnabled = true;
+
+        @YamlKey("fallback.ratio")
+        public double fallbackRatio = 0.75;
+
+        public ShallowRouteFile() {
+        }
+
+    }
+
+    @YamlFile(header = "Benchmark fixture with keys nested eight levels deep")
+    public static class DeepRouteFile {
+
+        @YamlKey("network.proxy.servers.pool.region.zone.primary.host")
+        public String primaryHost = "localhost";
+
+        @YamlKey("network.proxy.servers.pool.region.zone.primary.port")
+        public int primaryPort = 25565;
+
+        @YamlKey("network.proxy.servers.pool.region.zone.primary.timeout")
+        public long primaryTimeout = 30000L;
+
+        @YamlKey("network.proxy.servers.pool.region.zone.primary.retries")
+        public int primaryRetries = 3;
+
+        @YamlKey("network.proxy.servers.pool.region.zone.primary.enabled")
+        public boolean primaryEnabled = true;
+
+        @YamlKey("network.proxy.servers.pool.region.zone.primary.ratio")
+        public double primaryRatio = 0.75;
+
+        @YamlKey("network.proxy.servers.pool.region.zone.fallback.host")
+        public String fallbackHost = "localhost";
+
+        @YamlKey("network.proxy.servers.pool.region.zone.fallback.port")
+        public int fallbackPort = 25565;
+
+        @YamlKey("network.proxy.servers.pool.region.zone.fallback.timeout")
+        public long fallbackTimeout = 30000L;
+
+        @YamlKey("network.proxy.servers.pool.region.zone.fallback.retries")
+        public int fallbackRetries = 3;
+
+        @YamlKey("network.proxy.servers.pool.region.zone.fallback.enabled")
+        public boolean fallbackEnabled = true;
+
+        @YamlKey("network.proxy.servers.pool.region.zone.fallback.ratio")
+        public double fallbackRatio = 0.75;
+
+        public DeepRouteFile() {
+        }
+
+    }
+
+}
@@ -21,15 +21,18 @@ package net.william278.annotaml;
 
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.lang.reflect.Constructor;
+import java.io.*;
 import java.lang.reflect.InvocationTargetException;
-import java.util.Arrays;
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Represents a YAML file that can be parsed and dumped to/from disk
@@ -39,6 +42,12 @@ import java.util.Optional;
 @SuppressWarnings("unused")
 public class Annotaml<T> {
 
+    /**
+     * <b>Internal</b> - The maximum number of serialized files {@link #saveAll(Map, Executor, AnnotamlWriter)} holds
+     * waiting to be written
+     */
+    private static final int SAVE_ALL_PENDING = 256;
+
     /**
      * <b>Internal</b> - The object this Annotaml instance is representing
      */
@@ -46,10 +55,23 @@ public class Annotaml<T> {
     private final Class<T> objectClass;
 
     /**
-     * <b>Internal</b> - {@link YamlObjectMap} of the read object
+     * <b>Internal</b> - The object whose values were used as defaults when the instance was created, used again as
+     * the defaults when it is reloaded
+     */
+    @NotNull
+    private final T defaults;
+
+    /**
+     * <b>Internal</b> - {@link YamlObjectMap} of the read object, replaced when the instance is reloaded
      */
     @NotNull
-    private final YamlObjectMap<T> yamlObjectMap;
+    private volatile YamlObjectMap<T> yamlObjectMap;
+
+    /**
+     * <b>Internal</b> - Listeners notified when a reload changes the values of keys
+     */
+    @NotNull
+    private final List<ChangeListener<T>> listeners = new CopyOnWriteArrayList<>();
 
     /**
      * <b>Internal</b> - Generate a new {@link Annotaml} instance from an object
@@ -63,6 +85,7 @@ public class Annotaml<T> {
             throw new IllegalArgumentException("Object type must be annotated with @YamlFile");
         }
         this.objectClass = (Class<T>) object.getClass();
+        this.defaults = object;
         this.yamlObjectMap = new YamlObjectMap<>(object);
     }
 
@@ -70,10 +93,12 @@ public class Annotaml<T> {
      * <b>Internal</b> - Instantiate a new {@link Annotaml} instance from a {@link YamlObjectMap}
      *
      * @param yamlObjectMap The {@link YamlObjectMap} to instantiate the {@link Annotaml} instance from
+     * @param defaults      The default values the map was read with
      */
-    private Annotaml(@NotNull YamlObjectMap<T> yamlObjectMap) {
+    private Annotaml(@NotNull YamlObjectMap<T> yamlObjectMap, @NotNull T defaults) {
         this.yamlObjectMap = yamlObjectMap;
         this.objectClass = yamlObjectMap.getObjectClass();
+        this.defaults = defaults;
     }
 
     /**
@@ -110,10 +135,51 @@ public class Annotaml<T> {
      */
     @NotNull
     public static <T> Annotaml<T> create(@NotNull File file, @NotNull T object) throws IOException {
-        final Annotaml<T> annotaml = file.exists() ? create(object, new FileInputStream(file)) : create(object);
-        if (!file.exists()) {
-            annotaml.save(file);
+        return create(file.toPath(), object);
+    }
+
+    /**
+     * Generate a new {@link Annotaml} of a {@link T objectClass} from a file
+     * <p>
+     * If the file does not exist, it will be created using the defaults translated from a new instantiation of the default object.
+     *
+     * @param file        The file to read the object from
+     * @param objectClass The class object to instantiate
+     * @param <T>         The type of object this YAML file represents
+     * @return A new {@link Annotaml} instance
+     * @throws IOException               If the file cannot be read
+     * @throws IllegalArgumentException  If the object is not annotated with {@link YamlFile}
+     * @throws IllegalAccessException    If the object cannot be instantiated
+     * @throws InstantiationException    If the object cannot be instantiated
+     * @throws InvocationTargetException If the object cannot be instantiated
+     */
+    @NotNull
+    public static <T> Annotaml<T> create(@NotNull Path file, @NotNull Class<T> objectClass) throws IOException,
+            InvocationTargetException, InstantiationException, IllegalAccessException {
+        return create(file, getDefaults(objectClass));
+    }
+
+    /**
+     * Generate a new {@link Annotaml} of a {@link T object} from a file, using the object field values as defaults
+     * <p>
+     * If the file does not exist, it will be created using the defaults translated from the default object. The file
+     * is read through a {@link java.nio.channels.FileChannel}, memory-mapped if it is large, and always closed.
+     * If the class is declared {@link YamlFile#binaryCache()}, an unchanged file is loaded from its binary snapshot
+     * instead of being parsed.
+     *
+     * @param file   The file to read the object from
+     * @param object The default values of the file
+     * @param <T>    The type of object this YAML file represents
+     * @return A new {@link Annotaml} instance
+     * @throws IOException If the file cannot be read
+     */
+    @NotNull
+    public static <T> Annotaml<T> create(@NotNull Path file, @NotNull T object) throws IOException {
+        if (Files.exists(file)) {
+            return new Annotaml<>(YamlObjectMap.read(object, file), object);
         }
+        final Annotaml<T> annotaml = create(object);
+        annotaml.save(file.toFile());
         return annotaml;
     }
 
@@ -142,7 +208,7 @@ public class Annotaml<T> {
      */
     @NotNull
     public static <T> Annotaml<T> create(@NotNull T defaults, @NotNull InputStream inputStream) throws IOException {
-        return new Annotaml<>(YamlObjectMap.parse(defaults, inputStream));
+        return new Annotaml<>(YamlObjectMap.parse(defaults, inputStream), defaults);
     }
 
     /**
@@ -163,7 +229,257 @@ public class Annotaml<T> {
     @NotNull
     public static <T> Annotaml<T> create(@NotNull Class<T> objectClass, @NotNull InputStream inputStream) throws IOException,
             InvocationTargetException, InstantiationException, IllegalAccessException {
-        return new Annotaml<>(YamlObjectMap.parse(Annotaml.getDefaults(objectClass), inputStream));
+        return create(Annotaml.getDefaults(objectClass), inputStream);
+    }
+
+    /**
+     * Read a stream of {@code ---}-separated YAML documents as {@link YamlFile}-annotated objects, lazily
+     * <p>
+     * Each document is only read when the returned stream reaches it, so streams of any number of documents can be
+     * read without holding them all in memory. Default values from a new instance of the object are used where a
+     * document does not contain a value for a field key. Closing the returned stream closes the input stream.
+     * <p>
+     * Input without any documents, such as an empty stream or one of only comments, gives an empty stream rather
+     * than an object of defaults. An empty document ({@code ---} with no content) gives an object of defaults, except
+     * for {@link YamlFile#rootedMap() rooted maps}, which are given no entries, as for any other document.
+     * <p>
+     * Failures to read a document are thrown from the stream as {@link UncheckedIOException}s, and failures to
+     * instantiate an object as {@link IllegalStateException}s.
+     *
+     * @param objectClass The class of the objects to read
+     * @param inputStream The {@link InputStream} of the YAML documents to read
+     * @param <T>         The type of the objects to read
+     * @return A sequential, ordered stream of the read objects
+     * @throws IllegalArgumentException  If the class is not annotated with {@link YamlFile}
+     * @throws InvocationTargetException If an error occurs while invoking the constructor of the object
+     * @throws InstantiationException    If an error occurs while instantiating the object
+     * @throws IllegalAccessException    If an error occurs while accessing the object
+     */
+    @NotNull
+    public static <T> Stream<T> stream(@NotNull Class<T> objectClass, @NotNull InputStream inputStream) throws
+            IllegalArgumentException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        final Iterator<YamlObjectMap<T>> documents = YamlObjectMap.parseAll(getDefaults(objectClass), inputStream);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(documents,
+                        Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .map(map -> {
+                    try {
+                        return map.getObject();
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException("Failed to instantiate " + objectClass.getName(), e);
+                    }
+                })
+                .onClose(() -> {
+                    try {
+                        inputStream.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Write {@link YamlFile}-annotated objects to an {@link OutputStream} as a stream of {@code ---}-separated YAML
+     * documents
+     * <p>
+     * Each object is mapped and written in turn, so only the document being written is held in memory. The output
+     * stream is flushed, but not closed.
+     *
+     * @param objects      The objects to write
+     * @param outputStream The {@link OutputStream} to write the YAML documents to
+     * @param <T>          The type of the objects to write
+     * @throws IllegalArgumentException If an object is not annotated with {@link YamlFile}
+     * @throws IOException              If an error occurs while writing the YAML
+     */
+    public static <T> void writeAll(@NotNull Iterable<T> objects, @NotNull OutputStream outputStream) throws
+            IllegalArgumentException, IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        try (YamlEmitter.DocumentWriter documents = new YamlEmitter.DocumentWriter(writer)) {
+            for (final T object : objects) {
+                documents.write(new YamlObjectMap<>(object));
+            }
+        }
+    }
+
+    /**
+     * Read every YAML file ({@code .yml} or {@code .yaml}) directly within a directory as objects of the same type,
+     * in parallel
+     * <p>
+     * The class is resolved once up front and its model is shared by every file. Default values from a new instance
+     * of the object are used where a file does not contain a value for a field key.
+     *
+     * @param directory   The directory to read the files of
+     * @param objectClass The class of the objects to read
+     * @param executor    The executor to read the files on, such as a {@link java.util.concurrent.ForkJoinPool} or a
+     *                    virtual thread executor
+     * @param <T>         The type of the objects to read
+     * @return Map of the path of each file to its object, in path order
+     * @throws IOException              If the directory could not be listed, or any file could not be read. Failures
+     *                                  after the first are added as suppressed exceptions
+     * @throws IllegalArgumentException If the object type is not annotated with {@link YamlFile}
+     */
+    @NotNull
+    public static <T> Map<Path, T> loadAll(@NotNull Path directory, @NotNull Class<T> objectClass,
+                                           @NotNull Executor executor) throws IOException, IllegalArgumentException {
+        final List<Path> files;
+        try (Stream<Path> paths = Files.list(directory)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        final String name = path.getFileName().toString();
+                        return name.endsWith(".yml") || name.endsWith(".yaml");
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        return loadAll(files, objectClass, executor);
+    }
+
+    /**
+     * Read files as objects of the same type, in parallel
+     * <p>
+     * The class is resolved once up front and its model is shared by every file. Default values from a new instance
+     * of the object are used where a file does not contain a value for a field key. Every file must exist.
+     *
+     * @param files       The files to read
+     * @param objectClass The class of the objects to read
+     * @param executor    The executor to read the files on, such as a {@link java.util.concurrent.ForkJoinPool} or a
+     *                    virtual thread executor
+     * @param <T>         The type of the objects to read
+     * @return Map of the path of each file to its object, in the order of the files
+     * @throws IOException              If any file could not be read. Failures after the first are added as
+     *                                  suppressed exceptions
+     * @throws IllegalArgumentException If the object type is not annotated with {@link YamlFile}
+     */
+    @NotNull
+    public static <T> Map<Path, T> loadAll(@NotNull Collection<File> files, @NotNull Class<T> objectClass,
+                                           @NotNull Executor executor) throws IOException, IllegalArgumentException {
+        final List<Path> paths = new ArrayList<>(files.size());
+        files.forEach(file -> paths.add(file.toPath()));
+        return loadAll(paths, objectClass, executor);
+    }
+
+    @NotNull
+    private static <T> Map<Path, T> loadAll(@NotNull List<Path> files, @NotNull Class<T> objectClass,
+                                            @NotNull Executor executor) throws IOException, IllegalArgumentException {
+        YamlClassModel.of(objectClass);
+
+        // Read each file on the executor
+        final Map<Path, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (final Path file : files) {
+            futures.put(file, CompletableFuture.supplyAsync(() -> {
+                try {
+                    final T defaults = getDefaults(objectClass);
+                    return new Annotaml<>(YamlObjectMap.read(defaults, file), defaults).get();
+                } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+
+        // Collect the objects, gathering any failures
+        final Map<Path, T> objects = new LinkedHashMap<>();
+        IOException failure = null;
+        for (final Map.Entry<Path, CompletableFuture<T>> entry : futures.entrySet()) {
+            try {
+                objects.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException | CancellationException e) {
+                final IOException exception = new IOException("Failed to load file " + entry.getKey(),
+                        e instanceof CompletionException ? e.getCause() : e);
+                if (failure == null) {
+                    failure = exception;
+                } else {
+                    failure.addSuppressed(exception);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return objects;
+    }
+
+    /**
+     * Save many objects to YAML files, serializing them in parallel while the serialized files are written
+     * <p>
+     * Each object is serialized on the executor, then handed to the {@link AnnotamlWriter#getDefault() shared writer},
+     * which writes it out while the next objects are being serialized. The shared writer's queue is also used by
+     * {@link #saveAsync(File)}, so its other pending saves are written alongside these; use
+     * {@link #saveAll(Map, Executor, AnnotamlWriter)} to write on a writer of your own instead. The number of
+     * serialized files waiting to be written is bounded, so that serializing does not run far ahead of writing. Files
+     * that already have the contents being saved are not written again.
+     *
+     * @param objects  Map of the path of each file to the object to save to it
+     * @param executor The executor to serialize the objects on, such as a {@link java.util.concurrent.ForkJoinPool}
+     * @param <T>      The type of the objects to save
+     * @throws IOException              If any object could not be saved, including if the executor rejected it.
+     *                                  Failures after the first are added as suppressed exceptions
+     * @throws IllegalArgumentException If an object type is not annotated with {@link YamlFile}
+     */
+    public static <T> void saveAll(@NotNull Map<Path, T> objects, @NotNull Executor executor) throws IOException,
+            IllegalArgumentException {
+        saveAll(objects, executor, AnnotamlWriter.getDefault());
+    }
+
+    /**
+     * Save many objects to YAML files, serializing them in parallel while the serialized files are written by a writer
+     * <p>
+     * Each object is serialized on the executor, then handed to the writer, which writes it out while the next objects
+     * are being serialized. The number of serialized files waiting to be written is bounded, so that serializing does
+     * not run far ahead of writing. Files that already have the contents being saved are not written again.
+     *
+     * @param objects  Map of the path of each file to the object to save to it
+     * @param executor The executor to serialize the objects on, such as a {@link java.util.concurrent.ForkJoinPool}
+     * @param writer   The writer to write the serialized files on
+     * @param <T>      The type of the objects to save
+     * @throws IOException              If any object could not be saved, including if the executor rejected it.
+     *                                  Failures after the first are added as suppressed exceptions
+     * @throws IllegalArgumentException If an object type is not annotated with {@link YamlFile}
+     */
+    public static <T> void saveAll(@NotNull Map<Path, T> objects, @NotNull Executor executor,
+                                   @NotNull AnnotamlWriter writer) throws IOException, IllegalArgumentException {
+        final Semaphore pending = new Semaphore(SAVE_ALL_PENDING);
+
+        // Serialize each object on the executor, then queue the serialized file to be written
+        final Map<Path, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        for (final Map.Entry<Path, T> entry : objects.entrySet()) {
+            final T object = entry.getValue();
+            YamlClassModel.of(object.getClass());
+            final Path file = entry.getKey().toAbsolutePath().normalize();
+            pending.acquireUninterruptibly();
+            CompletableFuture<Void> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        final YamlObjectMap<T> map = new YamlObjectMap<>(object);
+                        return writer.save(map, map.toBytes(), file);
+                    } catch (IOException | RuntimeException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor).thenCompose(written -> written);
+            } catch (RejectedExecutionException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((result, e) -> pending.release());
+            futures.put(entry.getKey(), future);
+        }
+
+        // Wait for every file to be written, gathering any failures
+        IOException failure = null;
+        for (final Map.Entry<Path, CompletableFuture<Void>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().join();
+            } catch (CompletionException | CancellationException e) {
+                final IOException exception = new IOException("Failed to save file " + entry.getKey(),
+                        e instanceof CompletionException ? e.getCause() : e);
+                if (failure == null) {
+                    failure = exception;
+                } else {
+                    failure.addSuppressed(exception);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     /**
@@ -177,8 +493,27 @@ public class Annotaml<T> {
         yamlObjectMap.save(file);
     }
 
+    /**
+     * Save the dumped field keyed field values of the object to a YAML file in the background, using the
+     * {@link AnnotamlWriter#getDefault() shared writer}
+     * <p>
+     * Repeated saves to the same file that have not started yet are merged into one write of the latest contents.
+     *
+     * @param file The file to save the object to
+     * @return A future completed once the file has been written, or completed exceptionally if the save failed
+     * @see AnnotamlWriter
+     */
+    @NotNull
+    public CompletableFuture<Void> saveAsync(@NotNull File file) {
+        return AnnotamlWriter.getDefault().save(this, file);
+    }
+
     /**
      * Get the object represented by this {@link Annotaml} instance
+     * <p>
+     * A new object is created on each call, unless the class is {@link YamlFile#cached() cached}. In that case, the
+     * same instance is returned until the instance is reloaded, or a deep copy of it if the class is
+     * {@link YamlFile#mutable() mutable}.
      *
      * @return The object represented by this {@link Annotaml} instance
      * @throws InvocationTargetException If an error occurs while invoking the object constructor
@@ -190,6 +525,201 @@ public class Annotaml<T> {
         return yamlObjectMap.getObject();
     }
 
+    /**
+     * Read this instance again from a YAML file, replacing its values
+     * <p>
+     * Values missing from the YAML take the defaults the instance was created with.
+     * If any values changed, the {@link #addListener(ChangeListener) change listeners} are notified of the changed keys.
+     *
+     * @param file The file to read from
+     * @return The keys whose values changed. For rooted maps, these are the changed map keys
+     * @throws IOException               If the file cannot be read
+     * @throws InvocationTargetException If an error occurs while invoking the constructor of the object
+     * @throws InstantiationException    If an error occurs while instantiating the object
+     * @throws IllegalAccessException    If an error occurs while accessing the object
+     */
+    @NotNull
+    public Set<String> reload(@NotNull File file) throws IOException, InvocationTargetException,
+            InstantiationException, IllegalAccessException {
+        return reload(read(file.toPath()));
+    }
+
+    /**
+     * Read this instance again from an {@link InputStream} of YAML, replacing its values
+     * <p>
+     * Values missing from the YAML take the defaults the instance was created with.
+     * If any values changed, the {@link #addListener(ChangeListener) change listeners} are notified of the changed keys.
+     *
+     * @param inputStream The {@link InputStream} of the yaml file to read from
+     * @return The keys whose values changed. For rooted maps, these are the changed map keys
+     * @throws IOException               If an error occurs while reading the {@link InputStream}
+     * @throws InvocationTargetException If an error occurs while invoking the constructor of the object
+     * @throws InstantiationException    If an error occurs while instantiating the object
+     * @throws IllegalAccessException    If an error occurs while accessing the object
+     */
+    @NotNull
+    public Set<String> reload(@NotNull InputStream inputStream) throws IOException, InvocationTargetException,
+            InstantiationException, IllegalAccessException {
+        return reload(YamlObjectMap.parse(defaults, inputStream));
+    }
+
+    /**
+     * Replace the values of this instance with a newly read map, notifying the change listeners if any changed
+     *
+     * @param reloaded The newly read map
+     * @return The keys whose values changed
+     */
+    @NotNull
+    private Set<String> reload(@NotNull YamlObjectMap<T> reloaded) {
+        final Set<String> changedKeys = replace(reloaded);
+        notifyListeners(changedKeys);
+        return changedKeys;
+    }
+
+    /**
+     * <b>Internal</b> - Read the object type of this instance from a file with its defaults, without replacing its
+     * values
+     *
+     * @param file The file to read from
+     * @return The read map
+     * @throws IOException If the file cannot be read
+     */
+    @NotNull
+    YamlObjectMap<T> read(@NotNull Path file) throws IOException {
+        return YamlObjectMap.read(defaults, file);
+    }
+
+    /**
+     * <b>Internal</b> - Replace the values of this instance with a newly read map, without notifying the change
+     * listeners
+     *
+     * @param reloaded The newly read map
+     * @return The keys whose values changed
+     */
+    @NotNull
+    Set<String> replace(@NotNull YamlObjectMap<T> reloaded) {
+        synchronized (this) {
+            final Set<String> changedKeys = Collections.unmodifiableSet(reloaded.getChangedKeys(yamlObjectMap));
+            yamlObjectMap = reloaded;
+            return changedKeys;
+        }
+    }
+
+    /**
+     * <b>Internal</b> - Notify the change listeners of keys whose values changed, if there are any
+     *
+     * @param changedKeys The changed keys
+     */
+    void notifyListeners(@NotNull Set<String> changedKeys) {
+        if (!changedKeys.isEmpty()) {
+            listeners.forEach(listener -> listener.onChange(this, changedKeys));
+        }
+    }
+
+    /**
+     * Update an existing object with the current values of the given keys, leaving its other fields untouched
+     * <p>
+     * Fields whose keys have no value are reset to their default. For rooted maps, the map field is replaced if any
+     * key is given.
+     *
+     * @param target The object to update; for example, the live object, or a copy of it
+     * @param keys   The keys to update, such as those passed to a {@link ChangeListener}
+     * @return The updated object
+     * @throws IllegalArgumentException     If a field could not be set
+     * @throws ReflectiveOperationException If a default object could not be instantiated to reset a field
+     */
+    @NotNull
+    public T apply(@NotNull T target, @NotNull Collection<String> keys) throws IllegalArgumentException,
+            ReflectiveOperationException {
+        return yamlObjectMap.applyKeysTo(target, keys);
+    }
+
+    /**
+     * Add a listener to be notified when a reload changes the values of keys
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(@NotNull ChangeListener<T> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a change listener
+     *
+     * @param listener The listener to remove
+     */
+    public void removeListener(@NotNull ChangeListener<T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * <b>Internal</b> - Get the object whose values are used as defaults when the instance is read
+     *
+     * @return The default object
+     */
+    @NotNull
+    T getDefaultObject() {
+        return defaults;
+    }
+
+    /**
+     * <b>Internal</b> - Get the {@link YamlObjectMap} of the read object
+     *
+     * @return The map of the object
+     */
+    @NotNull
+    YamlObjectMap<T> getYamlObjectMap() {
+        return yamlObjectMap;
+    }
+
+    /**
+     * Resolve and cache the keys, comments, header and constructor of {@link YamlFile}-annotated classes ahead of time
+     * <p>
+     * This is done automatically the first time a class is read or written; calling this at startup moves that cost
+     * out of the first load of each type.
+     *
+     * @param objectClasses The classes to preload. Each must be annotated with {@link YamlFile}
+     * @throws IllegalArgumentException If a class is not annotated with {@link YamlFile}
+     */
+    public static void preload(@NotNull Class<?>... objectClasses) throws IllegalArgumentException {
+        for (final Class<?> objectClass : objectClasses) {
+            YamlClassModel.of(objectClass);
+        }
+    }
+
+    /**
+     * Register metrics to record the time spent in each phase of reading and writing files to
+     * <p>
+     * Metrics are global, and receive the phases of every {@link YamlFile} class.
+     *
+     * @param metrics The metrics to register
+     * @see HistogramMetrics
+     */
+    public static void addMetrics(@NotNull AnnotamlMetrics metrics) {
+        Metrics.add(metrics);
+    }
+
+    /**
+     * Unregister metrics registered with {@link #addMetrics(AnnotamlMetrics)}
+     *
+     * @param metrics The metrics to unregister
+     */
+    public static void removeMetrics(@NotNull AnnotamlMetrics metrics) {
+        Metrics.remove(metrics);
+    }
+
+    /**
+     * Set the directory to store the binary snapshots of {@link YamlFile#binaryCache()} files in
+     * <p>
+     * By default, each snapshot is stored in a hidden file next to its YAML file. Setting a directory keeps them
+     * together instead, named by a hash of the path of their file.
+     *
+     * @param directory The directory to store snapshots in, or {@code null} to store them next to their files
+     */
+    public static void setSnapshotDirectory(@Nullable Path directory) {
+        SnapshotCache.setDirectory(directory);
+    }
+
     /**
      * Instantiate a new object of the type to get the defaults
      *
@@ -199,24 +729,16 @@ public class Annotaml<T> {
      * @throws InvocationTargetException If the constructor throws an exception
      * @throws InstantiationException    If the class that declares the underlying constructor represents an abstract class
      * @throws IllegalAccessException    If the underlying constructor is inaccessible
-     * @throws IllegalArgumentException  If the object does not contain a zero-argument constructor
+     * @throws IllegalArgumentException  If the object does not contain a zero-argument constructor, or is not
+     *                                   annotated with {@link YamlFile}
      */
     @ApiStatus.Internal
     protected static <T> T getDefaults(@NotNull Class<T> objectClass) throws InvocationTargetException,
             InstantiationException, IllegalAccessException, IllegalArgumentException {
-        // Validate that the object type constructor with zero arguments
-        final Optional<Constructor<?>> constructors = Arrays.stream(objectClass.getDeclaredConstructors())
-                .filter(constructor -> constructor.getParameterCount() == 0).findFirst();
-        if (constructors.isEmpty()) {
-            throw new IllegalArgumentException("Class type must have a zero-argument constructor: " + objectClass.getName());
-        }
-
-        // Get the constructor
-        final Constructor<?> constructor = constructors.get();
-        constructor.setAccessible(true);
-
-        // Instantiate an object of the class type to act as the base
-        @SuppressWarnings("unchecked") final T defaults = (T) constructor.newInstance();
+        final YamlClassModel<T> model = YamlClassModel.of(objectClass);
+        final long start = Metrics.start();
+        final T defaults = model.instantiate();
+        Metrics.record(AnnotamlMetrics.Phase.INSTANTIATE, objectClass, null, start, -1, -1);
         return defaults;
     }
 
@@ -0,0 +1,78 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+
+/**
+ * A listener notified of the time spent in each phase of reading and writing {@link YamlFile}s
+ * <p>
+ * Register metrics with {@link Annotaml#addMetrics(AnnotamlMetrics)}. Phases are recorded on the thread that performs
+ * them, so implementations must be thread-safe and should return quickly. No timings are taken while no metrics are
+ * registered. {@link HistogramMetrics} is a ready-made implementation.
+ */
+@FunctionalInterface
+public interface AnnotamlMetrics {
+
+    /**
+     * Called when a phase of reading or writing a file has completed
+     *
+     * @param phase       The phase
+     * @param objectClass The {@link YamlFile}-annotated class being read or written
+     * @param file        The file being read or written, or {@code null} if reading from a stream or not yet known
+     * @param nanos       The time spent in the phase, in nanoseconds
+     * @param bytes       The number of bytes of YAML read or written, or {@code -1} if not known
+     * @param keys        The number of keys read or written, or {@code -1} if not known
+     */
+    void record(@NotNull Phase phase, @NotNull Class<?> objectClass, @Nullable Path file, long nanos, long bytes,
+                int keys);
+
+    /**
+     * A phase of reading or writing a file
+     */
+    enum Phase {
+        /**
+         * Parsing YAML into a document, or reading the values of keys from the YAML of a
+         * {@link YamlFile#streamed() streamed} file, or indexing a {@link YamlFile#lazy() lazy} rooted map
+         */
+        PARSE,
+        /**
+         * Reading the values of mapped keys from a parsed document, or from the binary snapshot of a
+         * {@link YamlFile#binaryCache() binary cached} file
+         */
+        READ,
+        /**
+         * Setting the fields of an object from the read values
+         */
+        APPLY,
+        /**
+         * Instantiating an object to read default values from
+         */
+        INSTANTIATE,
+        /**
+         * Serializing values as YAML and writing them to a file
+         */
+        SAVE
+    }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread-safe holder of the current object read from a YAML file, which can be shared between threads without locking
+ * <p>
+ * The holder publishes immutable snapshots, each pairing a read {@link YamlObjectMap} with the object materialized from
+ * it. {@link #get()} is a single volatile read, so any number of threads can read the current object without blocking.
+ * Reloads and updates build a new snapshot off to the side, then swap it in atomically; readers see either the old or
+ * the new snapshot in full, never a partially read one.
+ * <p>
+ * Published objects are shared between every reader, so they must not be modified, unless the class is declared
+ * {@link YamlFile#mutable() mutable}, in which case {@link #get()} returns a deep copy instead. Updates are always
+ * applied to a deep copy, in which collections, maps, arrays and sections are copied too.
+ *
+ * @param <T> The type of object this YAML file represents
+ */
+@SuppressWarnings("unused")
+public final class AnnotamlRef<T> {
+
+    /**
+     * <b>Internal</b> - The model of the object class
+     */
+    @NotNull
+    private final YamlClassModel<T> model;
+
+    /**
+     * <b>Internal</b> - The object whose values are used as defaults when the holder is reloaded
+     */
+    @NotNull
+    private final T defaults;
+
+    /**
+     * <b>Internal</b> - The current snapshot
+     */
+    @NotNull
+    private final AtomicReference<Snapshot<T>> current;
+
+    private AnnotamlRef(@NotNull YamlObjectMap<T> map, @NotNull T defaults) throws InvocationTargetException,
+            InstantiationException, IllegalAccessException {
+        this.model = map.getModel();
+        this.defaults = defaults;
+        this.current = new AtomicReference<>(snapshot(map));
+    }
+
+    /**
+     * Create a new {@link AnnotamlRef} of a {@link T objectClass} from a file
+     * <p>
+     * If the file does not exist, it will be created using the defaults translated from a new instantiation of the
+     * default object.
+     *
+     * @param file        The file to read the object from
+     * @param objectClass The class object to instantiate
+     * @param <T>         The type of object this YAML file represents
+     * @return A new {@link AnnotamlRef} instance
+     * @throws IOException               If the file cannot be read
+     * @throws IllegalArgumentException  If the object is not annotated with {@link YamlFile}
+     * @throws IllegalAccessException    If the object cannot be instantiated
+     * @throws InstantiationException    If the object cannot be instantiated
+     * @throws InvocationTargetException If the object cannot be instantiated
+     */
+    @NotNull
+    public static <T> AnnotamlRef<T> create(@NotNull Path file, @NotNull Class<T> objectClass) throws IOException,
+            InvocationTargetException, InstantiationException, IllegalAccessException {
+        return of(Annotaml.create(file, objectClass));
+    }
+
+    /**
+     * Create a new {@link AnnotamlRef} holding the current values of an {@link Annotaml} instance
+     * <p>
+     * The holder is independent of the instance; later reloads of either are not seen by the other. The holder is
+     * reloaded with the defaults the instance was created with.
+     *
+     * @param annotaml The instance to take the values of
+     * @param <T>      The type of object this YAML file represents
+     * @return A new {@link AnnotamlRef} instance
+     * @throws IllegalAccessException    If the object cannot be instantiated
+     * @throws InstantiationException    If the object cannot be instantiated
+     * @throws InvocationTargetException If the object cannot be instantiated
+     */
+    @NotNull
+    public static <T> AnnotamlRef<T> of(@NotNull Annotaml<T> annotaml) throws InvocationTargetException,
+            InstantiationException, IllegalAccessException {
+        return new AnnotamlRef<>(annotaml.getYamlObjectMap(), annotaml.getDefaultObject());
+    }
+
+    /**
+     * Get the current object
+     * <p>
+     * This never blocks. The same instance is returned until the holder is reloaded or updated, or a deep copy of it if
+     * the class is {@link YamlFile#mutable() mutable}.
+     *
+     * @return The current object
+     * @throws InvocationTargetException If a copy of a mutable object could not be instantiated
+     * @throws InstantiationException    If a copy of a mutable object could not be instantiated
+     * @throws IllegalAccessException    If a copy of a mutable object could not be instantiated
+     */
+    @NotNull
+    public T get() throws InvocationTargetException, InstantiationException, IllegalAccessException {
+        final T object = current.get().object;
+        return model.isMutable() ? model.copy(object) : object;
+    }
+
+    /**
+     * Read the holder again from a YAML file, replacing its current object
+     * <p>
+     * The file is read and the new object materialized before it is published, so readers keep getting the previous
+     * object until then.
+     *
+     * @param file The file to read from
+     * @return The keys whose values changed. For rooted maps, these are the changed map keys
+     * @throws IOException               If the file cannot be read
+     * @throws InvocationTargetException If an error occurs while invoking the constructor of the object
+     * @throws InstantiationException    If an error occurs while instantiating the object
+     * @throws IllegalAccessException    If an error occurs while accessing the object
+     */
+    @NotNull
+    public Set<String> reload(@NotNull Path file) throws IOException, InvocationTargetException,
+            InstantiationException, IllegalAccessException {
+        return swap(YamlObjectMap.read(defaults, file));
+    }
+
+    /**
+     * Read the holder again from an {@link InputStream} of YAML, replacing its current object
+     *
+     * @param inputStream The {@link InputStream} of the yaml file to read from
+     * @return The keys whose values changed. For rooted maps, these are the changed map keys
+     * @throws IOException               If an error occurs while reading the {@link InputStream}
+     * @throws InvocationTargetException If an error occurs while invoking the constructor of the object
+     * @throws InstantiationException    If an error occurs while instantiating the object
+     * @throws IllegalAccessException    If an error occurs while accessing the object
+     */
+    @NotNull
+    public Set<String> reload(@NotNull InputStream inputStream) throws IOException, InvocationTargetException,
+            InstantiationException, IllegalAccessException {
+        return swap(YamlObjectMap.parse(defaults, inputStream));
+    }
+
+    /**
+     * Replace the current object with a new one
+     * <p>
+     * The object is published as is, so it must not be modified afterwards.
+     *
+     * @param object The new object
+     * @throws IllegalArgumentException If the object is not of the class of this holder
+     */
+    public void set(@NotNull T object) throws IllegalArgumentException {
+        if (object.getClass() != model.getObjectClass()) {
+            throw new IllegalArgumentException("Object must be of type " + model.getObjectClass().getName());
+        }
+        current.set(new Snapshot<>(new YamlObjectMap<>(object), object));
+    }
+
+    /**
+     * Atomically update the current object
+     * <p>
+     * The function is given a deep copy of the current object, which it may modify in place, including its collections,
+     * and return, or it may return a new object. If another reload or update is published while the function runs, it
+     * is called again with a fresh copy of the newer object, so it should be free of other side effects.
+     *
+     * @param updater The function to update a copy of the current object with
+     * @return The updated object, as published
+     * @throws InvocationTargetException If a copy of the object could not be instantiated
+     * @throws InstantiationException    If a copy of the object could not be instantiated
+     * @throws IllegalAccessException    If a copy of the object could not be instantiated
+     */
+    @NotNull
+    public T update(@NotNull UnaryOperator<T> updater) throws InvocationTargetException, InstantiationException,
+            IllegalAccessException {
+        while (true) {
+            final Snapshot<T> previous = current.get();
+            final T updated = updater.apply(model.copy(previous.object));
+            final Snapshot<T> next = new Snapshot<>(new YamlObjectMap<>(updated), updated);
+            if (current.compareAndSet(previous, next)) {
+                return model.isMutable() ? model.copy(updated) : updated;
+            }
+        }
+    }
+
+    /**
+     * Save the dumped field keyed field values of the current object to a YAML file
+     *
+     * @param file The file to save the object to
+     * @throws IOException If an error occurs while writing to the file
+     */
+    public void save(@NotNull File file) throws IOException {
+        current.get().map.save(file);
+    }
+
+    /**
+     * Publish a newly read map in place of the current snapshot
+     *
+     * @param reloaded The newly read map
+     * @return The keys whose values changed
+     */
+    @NotNull
+    private Set<String> swap(@NotNull YamlObjectMap<T> reloaded) throws InvocationTargetException,
+            InstantiationException, IllegalAccessException {
+        final Snapshot<T> previous = current.getAndSet(snapshot(reloaded));
+        return Collections.unmodifiableSet(reloaded.getChangedKeys(previous.map));
+    }
+
+    /**
+     * Materialize the object of a map into a new snapshot
+     *
+     * @param map The map
+     * @return The snapshot
+     */
+    @NotNull
+    private static <T> Snapshot<T> snapshot(@NotNull YamlObjectMap<T> map) throws InvocationTargetException,
+            InstantiationException, IllegalAccessException {
+        return new Snapshot<>(map, map.getObject());
+    }
+
+    /**
+     * <b>Internal</b> - A read map and the object materialized from it, never modified once published
+     *
+     * @param <T> The type of the object
+     */
+    private static final class Snapshot<T> {
+
+        @NotNull
+        private final YamlObjectMap<T> map;
+
+        @NotNull
+        private final T object;
+
+        private Snapshot(@NotNull YamlObjectMap<T> map, @NotNull T object) {
+            this.map = map;
+            this.object = object;
+        }
+
+    }
+
+}
@@ -0,0 +1,483 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches files read through {@link Annotaml} for changes, reloading them and notifying listeners
+ * <p>
+ * All watched files share a single {@link WatchService} thread. Bursts of change events for a file are debounced, and
+ * a file is only read again if its size or modification time has changed since it was last read. Reloads are applied
+ * to the watched {@link Annotaml} instance in place, and listeners are only called if a value changed. Listeners are
+ * called on the watcher thread.
+ */
+@SuppressWarnings("unused")
+public final class AnnotamlWatcher implements AutoCloseable {
+
+    /**
+     * The default time to wait after the last change event for a file before reloading it
+     */
+    public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(250);
+
+    @NotNull
+    private final WatchService service;
+
+    private final long debounceNanos;
+
+    /**
+     * <b>Internal</b> - The watched files, by absolute path
+     */
+    @NotNull
+    private final Map<Path, Watch<?>> watches = new ConcurrentHashMap<>();
+
+    /**
+     * <b>Internal</b> - The keys of the watched directories, by absolute path; guarded by the watcher itself
+     */
+    @NotNull
+    private final Map<Path, WatchKey> directories = new HashMap<>();
+
+    @NotNull
+    private final Thread thread;
+
+    private AnnotamlWatcher(@NotNull WatchService service, @NotNull Duration debounce) {
+        this.service = service;
+        this.debounceNanos = debounce.toNanos();
+        this.thread = new Thread(this::run, "annotaml-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Create a new watcher, using the {@link #DEFAULT_DEBOUNCE default debounce}
+     *
+     * @return The watcher
+     * @throws IOException If the watch service could not be created
+     */
+    @NotNull
+    public static AnnotamlWatcher create() throws IOException {
+        return create(DEFAULT_DEBOUNCE);
+    }
+
+    /**
+     * Create a new watcher
+     *
+     * @param debounce The time to wait after the last change event for a file before reloading it
+     * @return The watcher
+     * @throws IOException              If the watch service could not be created
+     * @throws IllegalArgumentException If the debounce is negative
+     */
+    @NotNull
+    public static AnnotamlWatcher create(@NotNull Duration debounce) throws IOException, IllegalArgumentException {
+        if (debounce.isNegative()) {
+            throw new IllegalArgumentException("Debounce must not be negative (was " + debounce + ")");
+        }
+        return new AnnotamlWatcher(FileSystems.getDefault().newWatchService(), debounce);
+    }
+
+    /**
+     * Watch a file read through {@link Annotaml#create(File, Class)} for changes
+     * <p>
+     * When the file changes, the instance is {@link Annotaml#reload(File) reloaded} from it, notifying its
+     * {@link ChangeListener}s, and the listener is passed the instance if any values changed. Watching a file that is
+     * already watched adds the listener to it.
+     * <p>
+     * Reloads change the values returned by {@link Annotaml#get()}, and saves of the instance write the reloaded
+     * values.
+     * <p>
+     * Changes are seen from when the instance was last read from the file, not from when it is watched; if the file
+     * changed in between, the instance is reloaded before this returns, and the listeners are notified on the calling
+     * thread.
+     *
+     * @param file     The file to watch
+     * @param annotaml The instance read from the file
+     * @param listener The listener to notify when the file is reloaded
+     * @param <T>      The type of object the file represents
+     * @throws IOException              If the directory of the file could not be watched
+     * @throws IllegalArgumentException If the file is already watched through a different instance
+     */
+    public <T> void watch(@NotNull File file, @NotNull Annotaml<T> annotaml, @NotNull Listener<T> listener)
+            throws IOException, IllegalArgumentException {
+        final Path path = file.toPath().toAbsolutePath().normalize();
+        final Path directory = path.getParent();
+        if (directory == null) {
+            throw new IOException("Unable to watch file without a parent directory: " + path);
+        }
+        final Watch<?> watch;
+        final boolean created;
+        synchronized (directories) {
+            directories.put(directory, directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY));
+
+            final Watch<?> existing = watches.get(path);
+            created = existing == null;
+            watch = created ? new Watch<>(path, annotaml) : existing;
+            if (watch.getAnnotaml() != annotaml) {
+                throw new IllegalArgumentException("File " + path + " is already watched through another instance");
+            }
+            watch.addListener(listener);
+            watches.put(path, watch);
+        }
+
+        // Catch up with any change made since the instance was read, which no event will be signalled for
+        if (created) {
+            watch.reloadIfChanged();
+        }
+    }
+
+    /**
+     * Stop watching a file, removing all of its listeners
+     * <p>
+     * The directory of the file is no longer watched once none of the files in it are.
+     *
+     * @param file The file to stop watching
+     */
+    public void unwatch(@NotNull File file) {
+        final Path path = file.toPath().toAbsolutePath().normalize();
+        synchronized (directories) {
+            if (watches.remove(path) == null) {
+                return;
+            }
+            final Path directory = path.getParent();
+            if (watches.keySet().stream().noneMatch(watched -> watched.getParent().equals(directory))) {
+                final WatchKey key = directories.remove(directory);
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop watching all files and stop the watcher thread
+     *
+     * @throws IOException If the watch service could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (directories) {
+            watches.clear();
+            directories.clear();
+        }
+        service.close();
+    }
+
+    /**
+     * Wait for change events, reloading each changed file once no further events for it have arrived for the debounce
+     * time
+     */
+    private void run() {
+        final Map<Path, Long> pending = new HashMap<>();
+        try {
+            while (true) {
+                final WatchKey key;
+                if (pending.isEmpty()) {
+                    key = service.take();
+                } else {
+                    final long wait = pending.values().stream().mapToLong(due -> due).min().orElse(0L)
+                            - System.nanoTime();
+                    key = wait > 0 ? service.poll(wait, TimeUnit.NANOSECONDS) : service.poll();
+                }
+                if (key != null) {
+                    collect(key, pending);
+                    key.reset();
+                }
+                reloadDue(pending);
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // The watcher was closed
+        }
+    }
+
+    /**
+     * Mark the watched files a key has events for as pending a reload
+     *
+     * @param key     The signalled key
+     * @param pending The pending files, mapped to when they are due to be reloaded
+     */
+    private void collect(@NotNull WatchKey key, @NotNull Map<Path, Long> pending) {
+        final Path directory = (Path) key.watchable();
+        final long due = System.nanoTime() + debounceNanos;
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                watches.keySet().stream()
+                        .filter(path -> directory.equals(path.getParent()))
+                        .forEach(path -> pending.put(path, due));
+                continue;
+            }
+            final Path path = directory.resolve((Path) event.context());
+            if (watches.containsKey(path)) {
+                pending.put(path, due);
+            }
+        }
+    }
+
+    /**
+     * Reload the pending files that are due
+     *
+     * @param pending The pending files, mapped to when they are due to be reloaded
+     */
+    private void reloadDue(@NotNull Map<Path, Long> pending) {
+        final long now = System.nanoTime();
+        final Iterator<Map.Entry<Path, Long>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Path, Long> entry = iterator.next();
+            if (entry.getValue() - now > 0) {
+                continue;
+            }
+            iterator.remove();
+            final Watch<?> watch = watches.get(entry.getKey());
+            if (watch != null) {
+                watch.reloadIfChanged();
+            }
+        }
+    }
+
+    /**
+     * A listener notified when a watched file is reloaded
+     *
+     * @param <T> The type of object the file represents
+     */
+    @FunctionalInterface
+    public interface Listener<T> {
+
+        /**
+         * Called on the watcher thread when the file has changed and been reloaded with changed values
+         *
+         * @param annotaml The reloaded instance
+         */
+        void onReload(@NotNull Annotaml<T> annotaml);
+
+        /**
+         * Called on the watcher thread when the file has changed but could not be read again, and for the failures of
+         * listeners passed to {@link #onListenerError(RuntimeException)} unless it is overridden
+         * <p>
+         * The file is read again on its next change.
+         *
+         * @param exception The exception thrown while reading the file
+         */
+        default void onError(@NotNull Exception exception) {
+        }
+
+        /**
+         * Called on the watcher thread when the file was reloaded, but a {@link ChangeListener} of the instance or
+         * {@link #onReload(Annotaml)} threw an exception
+         * <p>
+         * The reload itself succeeded, so the file is not read again until it next changes. By default, the exception
+         * is passed to {@link #onError(Exception)}.
+         *
+         * @param exception The exception thrown by the listener
+         */
+        default void onListenerError(@NotNull RuntimeException exception) {
+            onError(exception);
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - A watched file, with the instance read from it and its listeners
+     *
+     * @param <T> The type of object the file represents
+     */
+    private static final class Watch<T> {
+
+        @NotNull
+        private final Path path;
+
+        @NotNull
+        private final Annotaml<T> annotaml;
+
+        @NotNull
+        private final List<Listener<T>> listeners = new CopyOnWriteArrayList<>();
+
+        @Nullable
+        private Fingerprint fingerprint;
+
+        private Watch(@NotNull Path path, @NotNull Annotaml<T> annotaml) {
+            this.path = path;
+            this.annotaml = annotaml;
+            this.fingerprint = Fingerprint.loaded(path, annotaml.getYamlObjectMap());
+        }
+
+        @NotNull
+        private Annotaml<T> getAnnotaml() {
+            return annotaml;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void addListener(@NotNull Listener<?> listener) {
+            listeners.add((Listener<T>) listener);
+        }
+
+        /**
+         * Reload the instance from the file if its size or modification time has changed, notifying the listeners if
+         * any values changed
+         * <p>
+         * Changes made by saves of this process, which leave the file as it was last written, are not reloaded. This
+         * is called on the watcher thread, and once on the registering thread when the file is first watched.
+         */
+        private synchronized void reloadIfChanged() {
+            final Fingerprint current = Fingerprint.of(path);
+            if (current == null || current.equals(fingerprint)) {
+                return;
+            }
+            if (AtomicFileWriter.isLastWritten(path)) {
+                fingerprint = current;
+                return;
+            }
+
+            final YamlObjectMap<T> read;
+            try {
+                read = annotaml.read(path);
+            } catch (Exception e) {
+                listeners.forEach(listener -> notifyError(listener, e));
+                return;
+            }
+
+            // The file has been read, so failures of listeners from here on do not cause it to be read again
+            fingerprint = Fingerprint.loaded(path, read);
+            final Set<String> changedKeys = annotaml.replace(read);
+            if (changedKeys.isEmpty()) {
+                return;
+            }
+            try {
+                annotaml.notifyListeners(changedKeys);
+            } catch (RuntimeException e) {
+                listeners.forEach(listener -> notifyListenerError(listener, e));
+            }
+            for (final Listener<T> listener : listeners) {
+                try {
+                    listener.onReload(annotaml);
+                } catch (RuntimeException e) {
+                    notifyListenerError(listener, e);
+                }
+            }
+        }
+
+        /**
+         * Pass an exception thrown while reading the file to a listener, ignoring any exception it throws, so that it
+         * cannot stop the watcher thread
+         *
+         * @param listener  The listener
+         * @param exception The exception
+         */
+        private void notifyError(@NotNull Listener<T> listener, @NotNull Exception exception) {
+            try {
+                listener.onError(exception);
+            } catch (RuntimeException ignored) {
+                // The listener failed to handle its own error; there is nothing more to notify
+            }
+        }
+
+        /**
+         * Pass an exception thrown by a listener to a listener, ignoring any exception it throws, so that it cannot
+         * stop the watcher thread
+         *
+         * @param listener  The listener
+         * @param exception The exception
+         */
+        private void notifyListenerError(@NotNull Listener<T> listener, @NotNull RuntimeException exception) {
+            try {
+                listener.onListenerError(exception);
+            } catch (RuntimeException ignored) {
+                // The listener failed to handle its own error; there is nothing more to notify
+            }
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - The size and modification time of a file, used to tell whether it has changed
+     */
+    private static final class Fingerprint {
+
+        private final long size;
+
+        @NotNull
+        private final FileTime modified;
+
+        private Fingerprint(long size, @NotNull FileTime modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        /**
+         * Get the fingerprint of a file as it was when a map was read from it
+         * <p>
+         * Falls back to the current fingerprint of the file if the map was not read from it, such as when it was
+         * created with its defaults.
+         *
+         * @param path The absolute path of the file
+         * @param map  The map read from the file
+         * @return The fingerprint, or {@code null} if it could not be read
+         */
+        @Nullable
+        private static Fingerprint loaded(@NotNull Path path, @NotNull YamlObjectMap<?> map) {
+            final Path source = map.getSource();
+            final FileTime modified = map.getSourceModified();
+            if (source != null && modified != null && path.equals(source.toAbsolutePath().normalize())) {
+                return new Fingerprint(map.getSourceBytes(), modified);
+            }
+            return of(path);
+        }
+
+        @Nullable
+        private static Fingerprint of(@NotNull Path path) {
+            try {
+                final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return new Fingerprint(attributes.size(), attributes.lastModifiedTime());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof Fingerprint)) {
+                return false;
+            }
+            final Fingerprint other = (Fingerprint) obj;
+            return size == other.size && modified.equals(other.modified);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(size) + modified.hashCode();
+        }
+
+    }
+
+}
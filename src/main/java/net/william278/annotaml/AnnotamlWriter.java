@@ -0,0 +1,326 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Saves {@link Annotaml} instances to disk in the background, off the calling thread
+ * <p>
+ * Saves are queued per file. If a file is saved again before its queued save has started, the two are merged into one
+ * write of the latest contents. At most one save of a file runs at a time, and at most {@code parallelism} files are
+ * written at once. Virtual threads are used to run saves where the runtime supports them.
+ * <p>
+ * Call {@link #flush()} to wait for queued saves, and {@link #close()} on shutdown to flush and stop the writer.
+ */
+@SuppressWarnings("unused")
+public final class AnnotamlWriter implements AutoCloseable {
+
+    /**
+     * <b>Internal</b> - Lock guarding the queued saves and the closed state
+     */
+    @NotNull
+    private final Object lock = new Object();
+
+    /**
+     * <b>Internal</b> - The queued and running saves, by absolute file path
+     */
+    @NotNull
+    private final Map<Path, Slot> slots = new HashMap<>();
+
+    @NotNull
+    private final ExecutorService executor;
+
+    @NotNull
+    private final Semaphore permits;
+
+    private final boolean shared;
+
+    private boolean closed;
+
+    private AnnotamlWriter(int parallelism, boolean shared) {
+        this.executor = createExecutor(parallelism);
+        this.permits = new Semaphore(parallelism);
+        this.shared = shared;
+    }
+
+    /**
+     * Create a new writer that writes up to one file per available processor at once
+     *
+     * @return The writer
+     */
+    @NotNull
+    public static AnnotamlWriter create() {
+        return create(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new writer
+     *
+     * @param parallelism The maximum number of files to write at once
+     * @return The writer
+     * @throws IllegalArgumentException If the parallelism is less than {@code 1}
+     */
+    @NotNull
+    public static AnnotamlWriter create(int parallelism) throws IllegalArgumentException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1 (was " + parallelism + ")");
+        }
+        return new AnnotamlWriter(parallelism, false);
+    }
+
+    /**
+     * Get the writer shared by {@link Annotaml#saveAsync(File)}
+     * <p>
+     * The shared writer cannot be closed; {@link #close()} only flushes it. Its threads do not keep the JVM alive, so
+     * it should be flushed on shutdown.
+     *
+     * @return The shared writer
+     */
+    @NotNull
+    public static AnnotamlWriter getDefault() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Queue a save of an {@link Annotaml} instance to a file
+     * <p>
+     * The contents saved are those of the instance when this is called: the instance is serialized on the calling
+     * thread, and only the write is done in the background, so the object may be modified once this returns.
+     *
+     * @param annotaml The instance to save
+     * @param file     The file to save to
+     * @return A future completed once the file has been written, or completed exceptionally with the
+     * {@link IOException} or {@link IllegalArgumentException} that caused the save to fail
+     * @throws IllegalStateException If the writer has been closed
+     */
+    @NotNull
+    public CompletableFuture<Void> save(@NotNull Annotaml<?> annotaml, @NotNull File file)
+            throws IllegalStateException {
+        // Serialize on the calling thread, as the map shares its values with objects that may be modified later
+        final YamlObjectMap<?> map = annotaml.getYamlObjectMap();
+        final byte[] bytes;
+        try {
+            bytes = map.toBytes();
+        } catch (IOException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return save(map, bytes, file.toPath().toAbsolutePath().normalize());
+    }
+
+    /**
+     * <b>Internal</b> - Queue a write of YAML already serialized from a map, so that only the write is done by this
+     * writer
+     *
+     * @param map   The map the YAML was serialized from
+     * @param bytes The serialized YAML
+     * @param path  The absolute, normalized path of the file to save to
+     * @return A future completed once the file has been written
+     * @throws IllegalStateException If the writer has been closed
+     */
+    @NotNull
+    CompletableFuture<Void> save(@NotNull YamlObjectMap<?> map, byte @NotNull [] bytes, @NotNull Path path)
+            throws IllegalStateException {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("The writer has been closed");
+            }
+            final Slot slot = slots.computeIfAbsent(path, Slot::new);
+            slot.latest = map;
+            slot.latestBytes = bytes;
+            if (slot.queued == null) {
+                slot.queued = new CompletableFuture<>();
+                if (slot.running == null) {
+                    executor.execute(() -> run(slot));
+                }
+            }
+            return slot.queued;
+        }
+    }
+
+    /**
+     * Write the latest contents queued for a file, then queue it again if it was saved while being written
+     *
+     * @param slot The queued save
+     */
+    private void run(@NotNull Slot slot) {
+        final YamlObjectMap<?> map;
+        final byte[] bytes;
+        final CompletableFuture<Void> future;
+        synchronized (lock) {
+            map = slot.latest;
+            bytes = slot.latestBytes;
+            future = slot.queued;
+            slot.latest = null;
+            slot.latestBytes = null;
+            slot.queued = null;
+            slot.running = future;
+        }
+
+        permits.acquireUninterruptibly();
+        try {
+            Objects.requireNonNull(map).save(slot.path, Objects.requireNonNull(bytes));
+            future.complete(null);
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            permits.release();
+        }
+
+        synchronized (lock) {
+            slot.running = null;
+            if (slot.queued != null) {
+                executor.execute(() -> run(slot));
+            } else {
+                slots.remove(slot.path);
+            }
+        }
+    }
+
+    /**
+     * Wait for every save queued before this call to complete
+     *
+     * @throws IOException If any of the saves failed, naming the file it failed to save. Further failures are added
+     *                     as suppressed exceptions
+     */
+    public void flush() throws IOException {
+        final List<Map.Entry<Path, CompletableFuture<Void>>> futures = new ArrayList<>();
+        synchronized (lock) {
+            for (final Slot slot : slots.values()) {
+                if (slot.running != null) {
+                    futures.add(Map.entry(slot.path, slot.running));
+                }
+                if (slot.queued != null) {
+                    futures.add(Map.entry(slot.path, slot.queued));
+                }
+            }
+        }
+
+        IOException failure = null;
+        for (final Map.Entry<Path, CompletableFuture<Void>> future : futures) {
+            try {
+                future.getValue().join();
+            } catch (CompletionException | CancellationException e) {
+                final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                final IOException exception = new IOException("Failed to save " + future.getKey(), cause);
+                if (failure == null) {
+                    failure = exception;
+                } else {
+                    failure.addSuppressed(exception);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stop accepting saves, wait for queued saves to complete and stop the writer's threads
+     * <p>
+     * Closing the {@link #getDefault() shared writer} only flushes it.
+     *
+     * @throws IOException If any of the queued saves failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (shared) {
+            flush();
+            return;
+        }
+        synchronized (lock) {
+            closed = true;
+        }
+        try {
+            flush();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Create the executor that runs saves, using virtual threads where the runtime supports them
+     *
+     * @param parallelism The number of platform threads to use otherwise
+     * @return The executor
+     */
+    @NotNull
+    private static ExecutorService createExecutor(int parallelism) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            final AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(parallelism, runnable -> {
+                final Thread thread = new Thread(runnable, "annotaml-writer-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * <b>Internal</b> - The queued and running saves of a file
+     */
+    private static final class Slot {
+
+        @NotNull
+        private final Path path;
+
+        @Nullable
+        private YamlObjectMap<?> latest;
+
+        private byte @Nullable [] latestBytes;
+
+        @Nullable
+        private CompletableFuture<Void> queued;
+
+        @Nullable
+        private CompletableFuture<Void> running;
+
+        private Slot(@NotNull Path path) {
+            this.path = path;
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - Holder of the lazily created shared writer
+     */
+    private static final class Shared {
+
+        private static final AnnotamlWriter INSTANCE = new AnnotamlWriter(
+                Runtime.getRuntime().availableProcessors(), true
+        );
+
+    }
+
+}
@@ -0,0 +1,334 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <b>Internal</b> - Writes files atomically, skipping writes that would not change their contents
+ * <p>
+ * Contents are written to a temporary file next to the target, which is then moved over the target, so readers and
+ * crashes only ever see the old or the new contents. Symbolic links to the target are followed, and the POSIX
+ * permissions of the target are kept, or the default permissions of new files used if there is no target.
+ * <p>
+ * A write whose contents match those already on disk is skipped. The hash, size and modification time of recently
+ * written files are remembered, so that a file unchanged on disk since it was written is compared by its hash alone;
+ * otherwise the file is read and compared only if its size matches. Writes to the same file are serialized, so its
+ * remembered state always describes a single write.
+ */
+@ApiStatus.Internal
+final class AtomicFileWriter {
+
+    /**
+     * <b>Internal</b> - The maximum number of files whose state is remembered; forgotten files are compared on disk
+     */
+    private static final int MAX_REMEMBERED = 1024;
+
+    /**
+     * <b>Internal</b> - The state of each file as last written or compared, by absolute path, least recently used first
+     */
+    private static final Map<Path, FileState> WRITTEN = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(@NotNull Map.Entry<Path, FileState> eldest) {
+                    return size() > MAX_REMEMBERED;
+                }
+            });
+
+    /**
+     * <b>Internal</b> - Locks striped by path, held while a file is compared with and written over its state
+     */
+    private static final Object[] LOCKS = new Object[64];
+
+    static {
+        Arrays.setAll(LOCKS, i -> new Object());
+    }
+
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Write the contents of a file, unless it already has those contents
+     *
+     * @param file     The file to write
+     * @param contents The contents to write
+     * @param fsync    Whether to sync the contents to the storage device before moving them into place
+     * @return {@code true} if the file was written, or {@code false} if it was unchanged
+     * @throws IOException If the file could not be written
+     */
+    static boolean write(@NotNull Path file, byte @NotNull [] contents, boolean fsync) throws IOException {
+        final Path target = resolve(file);
+        final byte[] hash = hash(ByteBuffer.wrap(contents));
+        synchronized (lock(target)) {
+            if (isUnchanged(target, contents, hash)) {
+                return false;
+            }
+            try {
+                replace(target, contents, fsync);
+            } catch (IOException | RuntimeException e) {
+                WRITTEN.remove(target);
+                throw e;
+            }
+            final BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class);
+            WRITTEN.put(target, new FileState(hash, attributes.size(), attributes.lastModifiedTime()));
+        }
+        return true;
+    }
+
+    /**
+     * Write the contents of a file, without comparing them with its current contents or remembering them
+     * <p>
+     * Used for files that are only written when their contents change, such as snapshots, so that they do not take
+     * the place of other files in the remembered states.
+     *
+     * @param file     The file to write
+     * @param contents The contents to write
+     * @param fsync    Whether to sync the contents to the storage device before moving them into place
+     * @throws IOException If the file could not be written
+     */
+    static void replace(@NotNull Path file, byte @NotNull [] contents, boolean fsync) throws IOException {
+        final Path target = resolve(file);
+        synchronized (lock(target)) {
+            // Write to a temporary sibling, then move it over the target
+            final Path directory = target.getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            final Path temp = createTemp(target);
+            try {
+                copyPermissions(target, temp);
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    final ByteBuffer buffer = ByteBuffer.wrap(contents);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    if (fsync) {
+                        channel.force(true);
+                    }
+                }
+                move(temp, target);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            if (fsync && directory != null) {
+                syncDirectory(directory);
+            }
+        }
+    }
+
+    /**
+     * Check whether a file already has the given contents
+     * <p>
+     * A file unchanged on disk since it was last written is compared by the remembered hash. Otherwise, including once
+     * its state has been forgotten, the file is read and compared only if it has the same size as the contents, and
+     * its state remembered if they match.
+     *
+     * @param target   The resolved file
+     * @param contents The contents to be written
+     * @param hash     The SHA-256 hash of the contents
+     * @return {@code true} if the file has the contents
+     * @throws IOException If the file exists but could not be read
+     */
+    private static boolean isUnchanged(@NotNull Path target, byte @NotNull [] contents, byte @NotNull [] hash)
+            throws IOException {
+        final FileState last = WRITTEN.get(target);
+        if (last != null && last.matches(target)) {
+            return Arrays.equals(last.hash, hash);
+        }
+
+        // Read the attributes before the contents, so that a change made while reading is seen on the next write
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(target, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!attributes.isRegularFile() || attributes.size() != contents.length
+                || !Arrays.equals(Files.readAllBytes(target), contents)) {
+            return false;
+        }
+        WRITTEN.put(target, new FileState(hash, attributes.size(), attributes.lastModifiedTime()));
+        return true;
+    }
+
+    /**
+     * Check whether a file still has the contents it was last written with, or found to have when it was last written
+     * with them, as far as its size and modification time tell
+     *
+     * @param file The file to check
+     * @return {@code true} if the file is unchanged since it was last written
+     */
+    static boolean isLastWritten(@NotNull Path file) {
+        try {
+            final Path target = resolve(file);
+            final FileState last = WRITTEN.get(target);
+            return last != null && last.matches(target);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @NotNull
+    private static Object lock(@NotNull Path target) {
+        return LOCKS[Math.floorMod(target.hashCode(), LOCKS.length)];
+    }
+
+    /**
+     * Resolve the file to write, following symbolic links if it exists, so that a linked file is written in place of
+     * the link being replaced
+     *
+     * @param file The file to write
+     * @return The absolute path of the file to write
+     * @throws IOException If the links of an existing file could not be followed
+     */
+    @NotNull
+    private static Path resolve(@NotNull Path file) throws IOException {
+        final Path target = file.toAbsolutePath().normalize();
+        return Files.exists(target) ? target.toRealPath() : target;
+    }
+
+    /**
+     * Create an empty temporary file next to the file being written
+     * <p>
+     * Unlike {@link Files#createTempFile(Path, String, String, java.nio.file.attribute.FileAttribute[])}, which creates
+     * files accessible only to their owner, the file is created with the default permissions of new files, as limited
+     * by the umask, so that newly created files are as accessible as if they had been written directly.
+     *
+     * @param target The file being written
+     * @return The temporary file
+     * @throws IOException If the file could not be created
+     */
+    @NotNull
+    private static Path createTemp(@NotNull Path target) throws IOException {
+        while (true) {
+            final Path temp = target.resolveSibling("." + target.getFileName()
+                    + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // Try again with another name
+            }
+        }
+    }
+
+    /**
+     * Copy the POSIX permissions of the file being replaced to the temporary file, so that writing a file does not
+     * change who can access it
+     *
+     * @param target The file being replaced
+     * @param temp   The temporary file
+     * @throws IOException If the permissions could not be copied
+     */
+    private static void copyPermissions(@NotNull Path target, @NotNull Path temp) throws IOException {
+        if (!Files.exists(target) || Files.getFileAttributeView(target, PosixFileAttributeView.class) == null) {
+            return;
+        }
+        Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+    }
+
+    private static void move(@NotNull Path source, @NotNull Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Sync a directory so that a file moved into it survives a power loss. Not every platform supports opening
+     * directories, so failures are ignored
+     *
+     * @param directory The directory to sync
+     */
+    private static void syncDirectory(@NotNull Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be synced on this platform
+        }
+    }
+
+    /**
+     * Hash the remaining contents of a buffer with SHA-256
+     *
+     * @param contents The contents to hash
+     * @return The hash
+     */
+    static byte @NotNull [] hash(@NotNull ByteBuffer contents) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(contents.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * <b>Internal</b> - The hash, size and modification time of a file as last written or compared
+     */
+    private static final class FileState {
+
+        private final byte @NotNull [] hash;
+        private final long size;
+        @NotNull
+        private final FileTime modified;
+
+        private FileState(byte @NotNull [] hash, long size, @NotNull FileTime modified) {
+            this.hash = hash;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        /**
+         * Check that a file has not been changed on disk since it was written
+         *
+         * @param file The file to check
+         * @return {@code true} if the file still has the size and modification time it was written with
+         */
+        private boolean matches(@NotNull Path file) {
+            try {
+                final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return attributes.size() == size && attributes.lastModifiedTime().equals(modified);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+    }
+
+}
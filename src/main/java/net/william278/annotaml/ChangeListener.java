@@ -0,0 +1,45 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+
+/**
+ * A listener notified when an {@link Annotaml} instance is reloaded and the values of some of its keys have changed
+ *
+ * @param <T> The type of object the instance represents
+ */
+@FunctionalInterface
+public interface ChangeListener<T> {
+
+    /**
+     * Called when the instance has been reloaded with changed values, on the thread that reloaded it
+     * <p>
+     * Use {@link Annotaml#apply(Object, java.util.Collection)} to update an existing object with only the changed
+     * values.
+     *
+     * @param annotaml    The reloaded instance
+     * @param changedKeys The keys whose values changed. For rooted maps, these are the changed map keys
+     */
+    void onChange(@NotNull Annotaml<T> annotaml, @NotNull Set<String> changedKeys);
+
+}
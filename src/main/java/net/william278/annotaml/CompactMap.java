@@ -0,0 +1,251 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * A read-only map of {@link String} keys to values, laid out in flat arrays to minimise the memory used per entry
+ * <p>
+ * Keys and values are held in parallel arrays in insertion order, which is also the iteration order, and are found
+ * through an open-addressing table of entry indices. Keys are {@link String#intern() interned}, so keys repeated across
+ * maps are only held once. Compared to a {@link LinkedHashMap}, no node object is allocated per entry.
+ * <p>
+ * Compact maps cannot be modified; mutating methods throw {@link UnsupportedOperationException}. {@code null} values
+ * are permitted.
+ *
+ * @param <V> The type of the values of the map
+ */
+public final class CompactMap<V> extends AbstractMap<String, V> {
+
+    private static final CompactMap<?> EMPTY = new CompactMap<>(new String[0], new Object[0]);
+
+    @NotNull
+    private final String[] keys;
+
+    @NotNull
+    private final Object[] values;
+
+    /**
+     * <b>Internal</b> - The open-addressing table of the index of each entry plus one, or {@code 0} for empty slots
+     */
+    private final int @NotNull [] table;
+
+    private CompactMap(@NotNull String[] keys, @NotNull Object[] values) {
+        this.keys = keys;
+        this.values = values;
+        this.table = new int[tableSize(keys.length)];
+        final int mask = table.length - 1;
+        for (int index = 0; index < keys.length; index++) {
+            int slot = spread(keys[index].hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index + 1;
+        }
+    }
+
+    /**
+     * Get an empty compact map
+     *
+     * @param <V> The type of the values of the map
+     * @return An empty compact map
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public static <V> CompactMap<V> of() {
+        return (CompactMap<V>) EMPTY;
+    }
+
+    /**
+     * Create a compact map with the entries of a map, in its iteration order
+     * <p>
+     * Keys are converted to strings, as they are when written to YAML. If the map is already a compact map, it is
+     * returned as it is.
+     *
+     * @param map The map to copy
+     * @param <V> The type of the values of the map
+     * @return A compact map of the entries of the map
+     * @throws IllegalArgumentException If two keys of the map convert to the same string
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public static <V> CompactMap<V> copyOf(@NotNull Map<?, ? extends V> map) throws IllegalArgumentException {
+        if (map instanceof CompactMap) {
+            return (CompactMap<V>) map;
+        }
+        if (map.isEmpty()) {
+            return of();
+        }
+
+        final String[] keys = new String[map.size()];
+        final Object[] values = new Object[keys.length];
+        int index = 0;
+        for (final Map.Entry<?, ? extends V> entry : map.entrySet()) {
+            keys[index] = String.valueOf(entry.getKey()).intern();
+            values[index++] = entry.getValue();
+        }
+        final CompactMap<V> compact = new CompactMap<>(keys, values);
+        for (int i = 0; i < keys.length; i++) {
+            if (compact.indexOf(keys[i]) != i) {
+                throw new IllegalArgumentException("Duplicate key " + keys[i]);
+            }
+        }
+        return compact;
+    }
+
+    /**
+     * Get the index of the entry with a key
+     *
+     * @param key The key
+     * @return The index of the entry, or {@code -1} if there is none
+     */
+    private int indexOf(@Nullable Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        final int mask = table.length - 1;
+        for (int slot = spread(key.hashCode()) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            final String candidate = keys[table[slot] - 1];
+            if (candidate == key || candidate.equals(key)) {
+                return table[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(@Nullable Object key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(@Nullable Object key, @Nullable V defaultValue) {
+        final int index = indexOf(key);
+        return index < 0 ? defaultValue : (V) values[index];
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(@NotNull BiConsumer<? super String, ? super V> action) {
+        for (int index = 0; index < keys.length; index++) {
+            action.accept(keys[index], (V) values[index]);
+        }
+    }
+
+    @Override
+    @NotNull
+    public Set<String> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            @NotNull
+            public Iterator<String> iterator() {
+                return Collections.unmodifiableList(Arrays.asList(keys)).iterator();
+            }
+
+            @Override
+            public boolean contains(@Nullable Object key) {
+                return indexOf(key) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    @Override
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public Collection<V> values() {
+        return Collections.unmodifiableList(Arrays.asList((V[]) values));
+    }
+
+    @Override
+    @NotNull
+    public Set<Map.Entry<String, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            @NotNull
+            public Iterator<Map.Entry<String, V>> iterator() {
+                return new Iterator<>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < keys.length;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Map.Entry<String, V> next() {
+                        if (index >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        final int entry = index++;
+                        return new AbstractMap.SimpleImmutableEntry<>(keys[entry], (V) values[entry]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int tableSize(int size) {
+        int tableSize = 2;
+        while (tableSize < size * 2) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+}
@@ -0,0 +1,462 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * <b>Internal</b> - Reads and writes the value of a mapped field, created once per field
+ * <p>
+ * Instance fields are accessed through {@link MethodHandle}s adapted to exact signatures once, when the accessor is
+ * created, or through a generated {@link YamlCodec} when the class has one. The primitive getters and setters must
+ * only be called for fields of that exact primitive type; they avoid boxing the value on the way in or out.
+ */
+@ApiStatus.Internal
+abstract class FieldAccessor {
+
+    /**
+     * Create an accessor for a field
+     * <p>
+     * A {@link MethodHandle} accessor is used where possible. Static and final fields, and fields of classes in modules
+     * that do not open their package to Annotaml, fall back to reflective access.
+     *
+     * @param field The field to access
+     * @return An accessor for the field
+     */
+    @NotNull
+    static FieldAccessor of(@NotNull Field field) {
+        final FieldAccessor accessor = ofHandles(field);
+        return accessor != null ? accessor : ofReflection(field);
+    }
+
+    /**
+     * Create an accessor for an instance field through {@link MethodHandle}s
+     *
+     * @param field The field to access
+     * @return An accessor for the field, or {@code null} if the field is static or final, or its class is in a module
+     * that does not open its package to Annotaml
+     */
+    @Nullable
+    static FieldAccessor ofHandles(@NotNull Field field) {
+        if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+            return null;
+        }
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(
+                    field.getDeclaringClass(), MethodHandles.lookup()
+            );
+            return new MethodHandleAccessor(field.getType(), lookup.unreflectGetter(field),
+                    lookup.unreflectSetter(field));
+        } catch (IllegalAccessException | SecurityException e) {
+            // Module access was denied; the field can only be accessed reflectively
+            return null;
+        }
+    }
+
+    /**
+     * Create an accessor for a field through {@link Field#get(Object)} and {@link Field#set(Object, Object)}
+     *
+     * @param field The field to access
+     * @return An accessor for the field
+     */
+    @NotNull
+    static FieldAccessor ofReflection(@NotNull Field field) {
+        return new ReflectiveAccessor(field);
+    }
+
+    /**
+     * Create an accessor for a field of a generated {@link YamlCodec}
+     *
+     * @param codec The codec of the class declaring the field
+     * @param field The index of the field within the codec
+     * @return An accessor for the field
+     */
+    @NotNull
+    static <T> FieldAccessor of(@NotNull YamlCodec<T> codec, int field) {
+        return new CodecAccessor<>(codec, field);
+    }
+
+    @Nullable
+    abstract Object get(@NotNull Object target) throws IllegalAccessException;
+
+    abstract void set(@NotNull Object target, @Nullable Object value) throws IllegalAccessException;
+
+    int getInt(@NotNull Object target) throws IllegalAccessException {
+        return (Integer) get(target);
+    }
+
+    void setInt(@NotNull Object target, int value) throws IllegalAccessException {
+        set(target, value);
+    }
+
+    long getLong(@NotNull Object target) throws IllegalAccessException {
+        return (Long) get(target);
+    }
+
+    void setLong(@NotNull Object target, long value) throws IllegalAccessException {
+        set(target, value);
+    }
+
+    double getDouble(@NotNull Object target) throws IllegalAccessException {
+        return (Double) get(target);
+    }
+
+    void setDouble(@NotNull Object target, double value) throws IllegalAccessException {
+        set(target, value);
+    }
+
+    float getFloat(@NotNull Object target) throws IllegalAccessException {
+        return (Float) get(target);
+    }
+
+    void setFloat(@NotNull Object target, float value) throws IllegalAccessException {
+        set(target, value);
+    }
+
+    boolean getBoolean(@NotNull Object target) throws IllegalAccessException {
+        return (Boolean) get(target);
+    }
+
+    void setBoolean(@NotNull Object target, boolean value) throws IllegalAccessException {
+        set(target, value);
+    }
+
+    /**
+     * <b>Internal</b> - Accesses an instance field through {@link MethodHandle}s
+     * <p>
+     * The getter and setter of the field are adapted once to take the target as an {@link Object}, and, for primitive
+     * fields, once more to get and set the exact primitive type, so that every call is an
+     * {@link MethodHandle#invokeExact(Object...) exact invocation} with no adaptation or boxing at the call site.
+     */
+    private static final class MethodHandleAccessor extends FieldAccessor {
+
+        @NotNull
+        private final Class<?> type;
+
+        /**
+         * <b>Internal</b> - The getter, adapted to {@code (Object)Object}
+         */
+        @NotNull
+        private final MethodHandle getter;
+
+        /**
+         * <b>Internal</b> - The setter, adapted to {@code (Object, Object)void}
+         */
+        @NotNull
+        private final MethodHandle setter;
+
+        /**
+         * <b>Internal</b> - The getter, adapted to {@code (Object)} returning the field type, for primitive fields
+         */
+        @NotNull
+        private final MethodHandle primitiveGetter;
+
+        /**
+         * <b>Internal</b> - The setter, adapted to {@code (Object, type)void}, for primitive fields
+         */
+        @NotNull
+        private final MethodHandle primitiveSetter;
+
+        private MethodHandleAccessor(@NotNull Class<?> type, @NotNull MethodHandle getter,
+                                     @NotNull MethodHandle setter) {
+            this.type = type;
+            this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            this.primitiveGetter = getter.asType(MethodType.methodType(type, Object.class));
+            this.primitiveSetter = setter.asType(MethodType.methodType(void.class, Object.class, type));
+        }
+
+        @Override
+        @Nullable
+        Object get(@NotNull Object target) {
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void set(@NotNull Object target, @Nullable Object value) throws IllegalArgumentException {
+            try {
+                setter.invokeExact(target, value);
+            } catch (ClassCastException | NullPointerException e) {
+                throw new IllegalArgumentException("Cannot set field of type " + type.getName()
+                        + " to value " + value, e);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        int getInt(@NotNull Object target) {
+            try {
+                return (int) primitiveGetter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void setInt(@NotNull Object target, int value) {
+            try {
+                primitiveSetter.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        long getLong(@NotNull Object target) {
+            try {
+                return (long) primitiveGetter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void setLong(@NotNull Object target, long value) {
+            try {
+                primitiveSetter.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        double getDouble(@NotNull Object target) {
+            try {
+                return (double) primitiveGetter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void setDouble(@NotNull Object target, double value) {
+            try {
+                primitiveSetter.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        float getFloat(@NotNull Object target) {
+            try {
+                return (float) primitiveGetter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void setFloat(@NotNull Object target, float value) {
+            try {
+                primitiveSetter.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        boolean getBoolean(@NotNull Object target) {
+            try {
+                return (boolean) primitiveGetter.invokeExact(target);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void setBoolean(@NotNull Object target, boolean value) {
+            try {
+                primitiveSetter.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        /**
+         * Get an unchecked exception to throw for an exception thrown by a handle, which can only be unchecked as field
+         * access throws no checked exceptions
+         *
+         * @param throwable The thrown exception
+         * @return The exception to throw
+         */
+        @NotNull
+        private static RuntimeException rethrow(@NotNull Throwable throwable) {
+            if (throwable instanceof Error) {
+                throw (Error) throwable;
+            }
+            return throwable instanceof RuntimeException ? (RuntimeException) throwable
+                    : new IllegalStateException(throwable);
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - Accesses a field through {@link Field#get(Object)} and {@link Field#set(Object, Object)}
+     */
+    private static final class ReflectiveAccessor extends FieldAccessor {
+
+        @NotNull
+        private final Field field;
+
+        private ReflectiveAccessor(@NotNull Field field) {
+            field.setAccessible(true);
+            this.field = field;
+        }
+
+        @Override
+        @Nullable
+        Object get(@NotNull Object target) throws IllegalAccessException {
+            return field.get(target);
+        }
+
+        @Override
+        void set(@NotNull Object target, @Nullable Object value) throws IllegalAccessException {
+            field.set(target, value);
+        }
+
+        @Override
+        int getInt(@NotNull Object target) throws IllegalAccessException {
+            return field.getInt(target);
+        }
+
+        @Override
+        void setInt(@NotNull Object target, int value) throws IllegalAccessException {
+            field.setInt(target, value);
+        }
+
+        @Override
+        long getLong(@NotNull Object target) throws IllegalAccessException {
+            return field.getLong(target);
+        }
+
+        @Override
+        void setLong(@NotNull Object target, long value) throws IllegalAccessException {
+            field.setLong(target, value);
+        }
+
+        @Override
+        double getDouble(@NotNull Object target) throws IllegalAccessException {
+            return field.getDouble(target);
+        }
+
+        @Override
+        void setDouble(@NotNull Object target, double value) throws IllegalAccessException {
+            field.setDouble(target, value);
+        }
+
+        @Override
+        float getFloat(@NotNull Object target) throws IllegalAccessException {
+            return field.getFloat(target);
+        }
+
+        @Override
+        void setFloat(@NotNull Object target, float value) throws IllegalAccessException {
+            field.setFloat(target, value);
+        }
+
+        @Override
+        boolean getBoolean(@NotNull Object target) throws IllegalAccessException {
+            return field.getBoolean(target);
+        }
+
+        @Override
+        void setBoolean(@NotNull Object target, boolean value) throws IllegalAccessException {
+            field.setBoolean(target, value);
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - Accesses a field through the direct field access of a generated {@link YamlCodec}
+     */
+    private static final class CodecAccessor<T> extends FieldAccessor {
+
+        @NotNull
+        private final YamlCodec<T> codec;
+
+        @NotNull
+        private final Class<T> objectClass;
+
+        private final int field;
+
+        private CodecAccessor(@NotNull YamlCodec<T> codec, int field) {
+            this.codec = codec;
+            this.objectClass = codec.getObjectClass();
+            this.field = field;
+        }
+
+        @Override
+        @Nullable
+        Object get(@NotNull Object target) {
+            return codec.get(objectClass.cast(target), field);
+        }
+
+        @Override
+        void set(@NotNull Object target, @Nullable Object value) throws IllegalArgumentException {
+            try {
+                codec.set(objectClass.cast(target), field, value);
+            } catch (ClassCastException | NullPointerException e) {
+                throw new IllegalArgumentException("Cannot set field " + codec.getFieldNames()[field]
+                        + " to value " + value, e);
+            }
+        }
+
+        @Override
+        void setInt(@NotNull Object target, int value) {
+            codec.setInt(objectClass.cast(target), field, value);
+        }
+
+        @Override
+        void setLong(@NotNull Object target, long value) {
+            codec.setLong(objectClass.cast(target), field, value);
+        }
+
+        @Override
+        void setDouble(@NotNull Object target, double value) {
+            codec.setDouble(objectClass.cast(target), field, value);
+        }
+
+        @Override
+        void setFloat(@NotNull Object target, float value) {
+            codec.setFloat(objectClass.cast(target), field, value);
+        }
+
+        @Override
+        void setBoolean(@NotNull Object target, boolean value) {
+            codec.setBoolean(objectClass.cast(target), field, value);
+        }
+
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <b>Internal</b> - Reads YAML files through a {@link FileChannel}
+ * <p>
+ * Files are read fully into a heap buffer in a single pass. Only {@link YamlFile#lazy() lazy} rooted maps, which
+ * index a file without parsing it, {@link #map(Path) map} files of at least {@link #MAPPING_THRESHOLD} bytes instead.
+ * The channel is always closed once the file has been read.
+ * <p>
+ * A mapping keeps the file open until its buffer is collected, and on Windows an open mapping prevents the file from
+ * being replaced. Mapped buffers are therefore only used to index a file, and then dropped: a {@link LazyRootedMap}
+ * keeps only its index, and reads entries from the file when they are got. Files that are parsed in full, and may be
+ * saved straight after, are never mapped.
+ */
+@ApiStatus.Internal
+final class FileInput {
+
+    /**
+     * The size in bytes from which files read through {@link #map(Path)} are memory-mapped rather than read into a heap
+     * buffer
+     */
+    static final long MAPPING_THRESHOLD = 1024 * 1024;
+
+    private FileInput() {
+    }
+
+    /**
+     * Read the contents of a file into a heap buffer
+     *
+     * @param file The file to read
+     * @return A buffer of the contents of the file, positioned at its start
+     * @throws IOException If the file could not be read, or is too large to buffer
+     */
+    @NotNull
+    static ByteBuffer read(@NotNull Path file) throws IOException {
+        return read(file, false);
+    }
+
+    /**
+     * Read the contents of a file, memory-mapping it if it is at least {@link #MAPPING_THRESHOLD} bytes long
+     * <p>
+     * The buffer must be dropped as soon as it has been read, so that the mapping does not stop the file from being
+     * replaced for longer than necessary.
+     *
+     * @param file The file to read
+     * @return A buffer of the contents of the file, positioned at its start
+     * @throws IOException If the file could not be read, or is too large to buffer
+     */
+    @NotNull
+    static ByteBuffer map(@NotNull Path file) throws IOException {
+        return read(file, true);
+    }
+
+    @NotNull
+    private static ByteBuffer read(@NotNull Path file, boolean mapping) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to read (" + size + " bytes): " + file);
+            }
+            if (mapping && size >= MAPPING_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the buffer is full or the file ends
+            }
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Decode a buffer of UTF-8, skipping a leading byte order mark
+     *
+     * @param yaml The buffer to decode
+     * @return A reader over the decoded characters
+     * @throws IOException If the buffer is not valid UTF-8
+     */
+    @NotNull
+    static Reader decode(@NotNull ByteBuffer yaml) throws IOException {
+        final ByteBuffer bytes = yaml.duplicate();
+        if (bytes.remaining() >= 3 && bytes.get(bytes.position()) == (byte) 0xEF
+                && bytes.get(bytes.position() + 1) == (byte) 0xBB && bytes.get(bytes.position() + 2) == (byte) 0xBF) {
+            bytes.position(bytes.position() + 3);
+        }
+        final CharBuffer chars = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(bytes);
+        return new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+    }
+
+    /**
+     * Get an {@link InputStream} over the remaining bytes of a buffer, without copying them
+     *
+     * @param yaml The buffer to read
+     * @return The input stream
+     */
+    @NotNull
+    static InputStream stream(@NotNull ByteBuffer yaml) {
+        final ByteBuffer bytes = yaml.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return bytes.hasRemaining() ? bytes.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte @NotNull [] buffer, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (!bytes.hasRemaining()) {
+                    return -1;
+                }
+                final int read = Math.min(length, bytes.remaining());
+                bytes.get(buffer, offset, read);
+                return read;
+            }
+
+            @Override
+            public int available() {
+                return bytes.remaining();
+            }
+        };
+    }
+
+}
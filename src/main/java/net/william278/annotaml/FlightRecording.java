@@ -0,0 +1,212 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+
+/**
+ * <b>Internal</b> - Emits Java Flight Recorder events for loads, saves and reflective materialization of
+ * {@link YamlFile} objects
+ * <p>
+ * Each {@code begin} method returns an event to pass to the matching {@code commit} method, or {@code null} if the
+ * event is not being recorded, in which case nothing is allocated. If the {@code jdk.jfr} module is not present in the
+ * runtime, no events are ever recorded.
+ */
+@ApiStatus.Internal
+final class FlightRecording {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private FlightRecording() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecording.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Nullable
+    static Object beginLoad() {
+        return AVAILABLE ? Events.begin(Events.LOAD) : null;
+    }
+
+    static void commitLoad(@Nullable Object event, @NotNull Class<?> objectClass, @Nullable Path file, long bytes,
+                           int keys) {
+        if (event != null) {
+            Events.commitLoad(event, objectClass, file, bytes, keys);
+        }
+    }
+
+    @Nullable
+    static Object beginSave() {
+        return AVAILABLE ? Events.begin(Events.SAVE) : null;
+    }
+
+    static void commitSave(@Nullable Object event, @NotNull Class<?> objectClass, @NotNull Path file, long bytes,
+                           int keys) {
+        if (event != null) {
+            Events.commitSave(event, objectClass, file, bytes, keys);
+        }
+    }
+
+    @Nullable
+    static Object beginReflectInit() {
+        return AVAILABLE ? Events.begin(Events.REFLECT_INIT) : null;
+    }
+
+    static void commitReflectInit(@Nullable Object event, @NotNull Class<?> objectClass, @Nullable Path file,
+                                  int keys) {
+        if (event != null) {
+            Events.commitReflectInit(event, objectClass, file, keys);
+        }
+    }
+
+    /**
+     * <b>Internal</b> - Holds the references to {@code jdk.jfr}, so that they are only linked if it is present
+     */
+    private static final class Events {
+
+        private static final EventType LOAD = EventType.getEventType(AnnotamlLoad.class);
+        private static final EventType SAVE = EventType.getEventType(AnnotamlSave.class);
+        private static final EventType REFLECT_INIT = EventType.getEventType(AnnotamlReflectInit.class);
+
+        @Nullable
+        private static Object begin(@NotNull EventType type) {
+            if (!type.isEnabled()) {
+                return null;
+            }
+            final Event event = type == LOAD ? new AnnotamlLoad() : type == SAVE ? new AnnotamlSave()
+                    : new AnnotamlReflectInit();
+            event.begin();
+            return event;
+        }
+
+        private static void commitLoad(@NotNull Object event, @NotNull Class<?> objectClass, @Nullable Path file,
+                                       long bytes, int keys) {
+            final AnnotamlLoad load = (AnnotamlLoad) event;
+            load.end();
+            if (load.shouldCommit()) {
+                load.className = objectClass.getName();
+                load.path = file != null ? file.toString() : null;
+                load.bytes = bytes;
+                load.keys = keys;
+                load.commit();
+            }
+        }
+
+        private static void commitSave(@NotNull Object event, @NotNull Class<?> objectClass, @NotNull Path file,
+                                       long bytes, int keys) {
+            final AnnotamlSave save = (AnnotamlSave) event;
+            save.end();
+            if (save.shouldCommit()) {
+                save.className = objectClass.getName();
+                save.path = file.toString();
+                save.bytes = bytes;
+                save.keys = keys;
+                save.commit();
+            }
+        }
+
+        private static void commitReflectInit(@NotNull Object event, @NotNull Class<?> objectClass,
+                                              @Nullable Path file, int keys) {
+            final AnnotamlReflectInit init = (AnnotamlReflectInit) event;
+            init.end();
+            if (init.shouldCommit()) {
+                init.className = objectClass.getName();
+                init.path = file != null ? file.toString() : null;
+                init.keys = keys;
+                init.commit();
+            }
+        }
+
+    }
+
+    @Name("net.william278.annotaml.AnnotamlLoad")
+    @Label("Annotaml Load")
+    @Category({"Annotaml"})
+    @Description("Reading a YAML file or stream into a map of values")
+    @StackTrace(false)
+    static final class AnnotamlLoad extends Event {
+
+        @Label("Class")
+        String className;
+
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Keys")
+        int keys;
+
+    }
+
+    @Name("net.william278.annotaml.AnnotamlSave")
+    @Label("Annotaml Save")
+    @Category({"Annotaml"})
+    @Description("Serializing a map of values as YAML and writing it to a file")
+    @StackTrace(false)
+    static final class AnnotamlSave extends Event {
+
+        @Label("Class")
+        String className;
+
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Keys")
+        int keys;
+
+    }
+
+    @Name("net.william278.annotaml.AnnotamlReflectInit")
+    @Label("Annotaml Reflect Init")
+    @Category({"Annotaml"})
+    @Description("Instantiating an object and setting its fields from a map of values")
+    @StackTrace(false)
+    static final class AnnotamlReflectInit extends Event {
+
+        @Label("Class")
+        String className;
+
+        @Label("Path")
+        String path;
+
+        @Label("Keys")
+        int keys;
+
+    }
+
+}
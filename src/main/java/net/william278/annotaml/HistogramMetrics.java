@@ -0,0 +1,225 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link AnnotamlMetrics} that keeps a histogram of the time spent in each phase, per {@link YamlFile} class
+ * <p>
+ * Times are counted in buckets by power of two nanoseconds, using {@link LongAdder}s so that concurrent loads do not
+ * contend; percentiles are therefore accurate to within a factor of two. Byte and key counts are summed.
+ */
+public final class HistogramMetrics implements AnnotamlMetrics {
+
+    @NotNull
+    private final Map<Class<?>, Histogram[]> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(@NotNull Phase phase, @NotNull Class<?> objectClass, @Nullable Path file, long nanos, long bytes,
+                       int keys) {
+        histograms.computeIfAbsent(objectClass, type -> {
+            final Histogram[] phases = new Histogram[Phase.values().length];
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new Histogram();
+            }
+            return phases;
+        })[phase.ordinal()].record(nanos, bytes, keys);
+    }
+
+    /**
+     * Get a snapshot of the histogram of a phase for a class
+     *
+     * @param objectClass The {@link YamlFile}-annotated class
+     * @param phase       The phase
+     * @return The snapshot, which is empty if nothing has been recorded
+     */
+    @NotNull
+    public Snapshot getSnapshot(@NotNull Class<?> objectClass, @NotNull Phase phase) {
+        final Histogram[] phases = histograms.get(objectClass);
+        return phases == null ? new Snapshot(new long[Histogram.BUCKETS], 0, 0, 0) : phases[phase.ordinal()].snapshot();
+    }
+
+    /**
+     * Get a snapshot of the histograms of every phase for a class
+     *
+     * @param objectClass The {@link YamlFile}-annotated class
+     * @return The snapshot of each phase
+     */
+    @NotNull
+    public Map<Phase, Snapshot> getSnapshots(@NotNull Class<?> objectClass) {
+        final Map<Phase, Snapshot> snapshots = new EnumMap<>(Phase.class);
+        for (final Phase phase : Phase.values()) {
+            snapshots.put(phase, getSnapshot(objectClass, phase));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Clear every recorded histogram
+     */
+    public void reset() {
+        histograms.clear();
+    }
+
+    /**
+     * <b>Internal</b> - A histogram of the times recorded for a phase
+     */
+    private static final class Histogram {
+
+        private static final int BUCKETS = 64;
+
+        @NotNull
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        @NotNull
+        private final LongAdder nanos = new LongAdder();
+
+        @NotNull
+        private final LongAdder bytes = new LongAdder();
+
+        @NotNull
+        private final LongAdder keys = new LongAdder();
+
+        private Histogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos, long bytes, int keys) {
+            buckets[BUCKETS - Long.numberOfLeadingZeros(Math.max(nanos, 1))].increment();
+            this.nanos.add(nanos);
+            if (bytes > 0) {
+                this.bytes.add(bytes);
+            }
+            if (keys > 0) {
+                this.keys.add(keys);
+            }
+        }
+
+        @NotNull
+        private Snapshot snapshot() {
+            final long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return new Snapshot(counts, nanos.sum(), bytes.sum(), keys.sum());
+        }
+
+    }
+
+    /**
+     * A point-in-time view of the histogram of a phase
+     */
+    public static final class Snapshot {
+
+        private final long[] buckets;
+        private final long count;
+        private final long totalNanos;
+        private final long bytes;
+        private final long keys;
+
+        private Snapshot(long @NotNull [] buckets, long totalNanos, long bytes, long keys) {
+            this.buckets = buckets;
+            long count = 0;
+            for (final long bucket : buckets) {
+                count += bucket;
+            }
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.bytes = bytes;
+            this.keys = keys;
+        }
+
+        /**
+         * Get the number of times the phase was recorded
+         *
+         * @return The number of recordings
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Get the total time spent in the phase
+         *
+         * @return The total time, in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Get the mean time spent in the phase
+         *
+         * @return The mean time, in nanoseconds, or {@code 0} if nothing was recorded
+         */
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Get an upper bound of a percentile of the time spent in the phase
+         *
+         * @param percentile The percentile, between {@code 0} and {@code 100}
+         * @return The upper bound of the bucket containing the percentile, in nanoseconds, or {@code 0} if nothing was
+         * recorded
+         */
+        public long getPercentileNanos(double percentile) {
+            final long rank = (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Get the total number of bytes read or written in the phase, where known
+         *
+         * @return The total number of bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Get the total number of keys read or written in the phase, where known
+         *
+         * @return The total number of keys
+         */
+        public long getKeys() {
+            return keys;
+        }
+
+    }
+
+}
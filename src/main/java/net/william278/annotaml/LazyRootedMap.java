@@ -0,0 +1,667 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * <b>Internal</b> - A read-only rooted map over the YAML of a file, whose values are only parsed when they are got
+ * <p>
+ * The YAML is indexed in a single pass over its bytes, recording the offset, length and hash of each top-level entry;
+ * the buffer that was indexed is not kept. The value of an entry is read from the file and parsed each time it is got,
+ * unless it is held in the optional cache of recently got values. Iterating over the entries, as saves do, reads and
+ * parses runs of adjacent entries together, so that a pass over the map opens and parses the file in a few large
+ * ranges rather than once per entry. Only plain block mappings can be indexed; anything else, such as flow mappings,
+ * directives, multiple documents or duplicate keys, is left to be parsed in full.
+ * <p>
+ * Entries are checked against their hash as they are read. When the map is saved over its own file, it is indexed
+ * again from the bytes written. If the file has been replaced otherwise, it is indexed again and entries whose bytes
+ * are unchanged are read from their new offsets; entries whose bytes changed can no longer be read, and the file must
+ * be reloaded.
+ */
+@ApiStatus.Internal
+final class LazyRootedMap extends AbstractMap<String, Object> {
+
+    private static final Object NULL = new Object();
+
+    /**
+     * <b>Internal</b> - The most bytes of adjacent entries read and parsed together while iterating
+     */
+    private static final int BATCH_BYTES = 64 * 1024;
+
+    @NotNull
+    private final Path file;
+
+    /**
+     * <b>Internal</b> - The entries of the file as last indexed, replaced as a whole when it is indexed again
+     */
+    @NotNull
+    private volatile Entries entries;
+
+    @Nullable
+    private final Map<String, Object> cache;
+
+    private LazyRootedMap(@NotNull Path file, @NotNull Index index, int cacheSize) {
+        this.file = file;
+        this.entries = new Entries(index);
+        this.cache = cacheSize > 0 ? new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(@NotNull Map.Entry<String, Object> eldest) {
+                return size() > cacheSize;
+            }
+        } : null;
+    }
+
+    /**
+     * Index the top-level keys of a buffer of UTF-8 encoded YAML read from a file
+     *
+     * @param file      The file the YAML was read from, which values are read from when they are got
+     * @param yaml      The YAML to index. It is not kept by the map
+     * @param cacheSize The number of parsed values to keep, or {@code 0} to parse values on every get
+     * @return The lazy map, or {@code null} if the YAML is not a plain block mapping and must be parsed in full
+     * @throws IOException If a key could not be parsed
+     */
+    @Nullable
+    static LazyRootedMap index(@NotNull Path file, @NotNull ByteBuffer yaml, int cacheSize) throws IOException {
+        final Index index = Index.of(yaml);
+        return index != null ? new LazyRootedMap(file, index, cacheSize) : null;
+    }
+
+    /**
+     * <b>Internal</b> - The keys of an indexed file, and the hash, length and offset of each of their entries
+     * <p>
+     * If the file could not be indexed when it was last written through the map, the values of its entries are held
+     * instead, and there are no hashes, lengths or offsets.
+     */
+    private static final class Entries {
+
+        @NotNull
+        private final String[] keys;
+
+        @NotNull
+        private final Map<String, Integer> indices;
+
+        /**
+         * <b>Internal</b> - The hash of the bytes of each entry
+         */
+        private final long @NotNull [] hashes;
+
+        /**
+         * <b>Internal</b> - The length in bytes of each entry
+         */
+        private final int @NotNull [] lengths;
+
+        /**
+         * <b>Internal</b> - The offset of each entry in the file, or {@code -1} if the entry changed since it was
+         * indexed
+         */
+        private final int @NotNull [] offsets;
+
+        @Nullable
+        private final Map<String, Object> values;
+
+        private Entries(@NotNull Index index) {
+            this.keys = index.keys.toArray(new String[0]);
+            this.indices = index.indices;
+            this.hashes = index.hashes;
+            this.lengths = new int[keys.length];
+            for (int entry = 0; entry < keys.length; entry++) {
+                lengths[entry] = index.offsets[entry + 1] - index.offsets[entry];
+            }
+            this.offsets = Arrays.copyOf(index.offsets, keys.length);
+            this.values = null;
+        }
+
+        private Entries(@NotNull Entries entries, int @NotNull [] offsets) {
+            this.keys = entries.keys;
+            this.indices = entries.indices;
+            this.hashes = entries.hashes;
+            this.lengths = entries.lengths;
+            this.offsets = offsets;
+            this.values = entries.values;
+        }
+
+        private Entries(@NotNull Map<String, Object> values) {
+            this.keys = values.keySet().toArray(new String[0]);
+            this.indices = new HashMap<>();
+            for (int entry = 0; entry < keys.length; entry++) {
+                indices.put(keys[entry], entry);
+            }
+            this.hashes = new long[0];
+            this.lengths = new int[0];
+            this.offsets = new int[0];
+            this.values = values;
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - The keys of a YAML file, and the offset and hash of each of their entries
+     */
+    private static final class Index {
+
+        @NotNull
+        private final List<String> keys = new ArrayList<>();
+
+        @NotNull
+        private final Map<String, Integer> indices = new HashMap<>();
+
+        /**
+         * <b>Internal</b> - The offset of each entry, followed by the offset of the end of the last entry
+         */
+        private int @NotNull [] offsets = new int[64];
+
+        private long @NotNull [] hashes = new long[0];
+
+        /**
+         * Index the top-level keys of a buffer of UTF-8 encoded YAML
+         *
+         * @param yaml The YAML to index
+         * @return The index, or {@code null} if the YAML is not a plain block mapping
+         * @throws IOException If a key could not be parsed
+         */
+        @Nullable
+        static Index of(@NotNull ByteBuffer yaml) throws IOException {
+            final ByteBuffer buffer = yaml.slice();
+            final int limit = buffer.limit();
+            final Index index = new Index();
+            int end = limit;
+
+            int position = hasBom(buffer) ? 3 : 0;
+            while (position < limit) {
+                final int lineStart = position;
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                position = lineEnd + 1;
+
+                // Indented, blank and comment lines belong to the entry above them
+                final byte first = buffer.get(lineStart);
+                if (first == ' ' || first == '\t' || first == '\n' || first == '\r' || first == '#') {
+                    if (index.keys.isEmpty() && !isBlank(buffer, lineStart, lineEnd)) {
+                        return null;
+                    }
+                    continue;
+                }
+
+                // Allow a document start marker before the first key, and a document end marker after the last
+                if (isMarker(buffer, lineStart, lineEnd, (byte) '-')) {
+                    if (!index.keys.isEmpty()) {
+                        return null;
+                    }
+                    continue;
+                }
+                if (isMarker(buffer, lineStart, lineEnd, (byte) '.')) {
+                    end = lineStart;
+                    if (!isBlank(buffer, position, limit)) {
+                        return null;
+                    }
+                    break;
+                }
+
+                final String key = readKey(buffer, lineStart, lineEnd);
+                if (key == null || index.indices.putIfAbsent(key, index.keys.size()) != null) {
+                    return null;
+                }
+                if (index.keys.size() == index.offsets.length - 1) {
+                    index.offsets = Arrays.copyOf(index.offsets, index.offsets.length * 2);
+                }
+                index.offsets[index.keys.size()] = lineStart;
+                index.keys.add(key);
+            }
+
+            final int size = index.keys.size();
+            index.offsets[size] = end;
+            index.offsets = Arrays.copyOf(index.offsets, size + 1);
+            index.hashes = new long[size];
+            for (int entry = 0; entry < size; entry++) {
+                index.hashes[entry] = hash(buffer, index.offsets[entry], index.offsets[entry + 1]);
+            }
+            return index;
+        }
+
+    }
+
+    /**
+     * Read the key of a top-level key line
+     *
+     * @param buffer    The buffer of YAML
+     * @param lineStart The offset of the start of the line
+     * @param lineEnd   The offset of the end of the line
+     * @return The key, or {@code null} if the line is not a simple key
+     * @throws IOException If the key could not be parsed
+     */
+    @Nullable
+    private static String readKey(@NotNull ByteBuffer buffer, int lineStart, int lineEnd) throws IOException {
+        final byte first = buffer.get(lineStart);
+        if (first == '[' || first == '{' || first == '?' || first == '&' || first == '*' || first == '!'
+                || first == '|' || first == '>' || first == '%' || first == '@' || first == '`'
+                || (first == '-' && isSeparator(buffer, lineStart + 1, lineEnd))
+                || (isMarker(buffer, lineStart, Math.min(lineStart + 3, lineEnd), (byte) '-')
+                        && isSeparator(buffer, lineStart + 3, lineEnd))
+                || (isMarker(buffer, lineStart, Math.min(lineStart + 3, lineEnd), (byte) '.')
+                        && isSeparator(buffer, lineStart + 3, lineEnd))) {
+            return null;
+        }
+
+        // Find the end of the key, skipping over quoted keys
+        int position = lineStart;
+        if (first == '"' || first == '\'') {
+            position++;
+            while (position < lineEnd) {
+                final byte b = buffer.get(position);
+                if (first == '"' && b == '\\') {
+                    position += 2;
+                    continue;
+                }
+                if (b == first) {
+                    if (first == '\'' && position + 1 < lineEnd && buffer.get(position + 1) == '\'') {
+                        position += 2;
+                        continue;
+                    }
+                    break;
+                }
+                position++;
+            }
+            position++;
+        }
+        while (position < lineEnd && !(buffer.get(position) == ':' && isSeparator(buffer, position + 1, lineEnd))) {
+            if (buffer.get(position) == '#' && buffer.get(position - 1) == ' ') {
+                return null;
+            }
+            position++;
+        }
+        if (position >= lineEnd) {
+            return null;
+        }
+
+        final byte[] key = new byte[position - lineStart];
+        buffer.duplicate().position(lineStart).get(key);
+        return YamlEventReader.readKey(new String(key, StandardCharsets.UTF_8).trim());
+    }
+
+    @Override
+    @Nullable
+    public Object get(@Nullable Object key) {
+        if (!(key instanceof String) || !entries.indices.containsKey(key)) {
+            return null;
+        }
+        if (cache == null) {
+            return parse((String) key);
+        }
+
+        Object value;
+        synchronized (cache) {
+            value = cache.get(key);
+        }
+        if (value == null) {
+            value = parse((String) key);
+            synchronized (cache) {
+                cache.put((String) key, value == null ? NULL : value);
+            }
+        }
+        return value == NULL ? null : value;
+    }
+
+    /**
+     * Parse the value of an entry from its bytes
+     *
+     * @param key The key of the entry
+     * @return The value of the entry
+     * @throws UncheckedIOException If the entry could not be read or parsed, such as if it changed since it was
+     *                              indexed or refers to an anchor in another entry
+     */
+    @Nullable
+    private Object parse(@NotNull String key) {
+        try {
+            for (boolean reindexed = false; ; reindexed = true) {
+                final Entries entries = this.entries;
+                if (entries.values != null) {
+                    return entries.values.get(key);
+                }
+                final Integer index = entries.indices.get(key);
+                if (index == null) {
+                    return null;
+                }
+                final ByteBuffer bytes = readEntry(entries, index);
+                if (bytes != null) {
+                    return YamlEventReader.of(FileInput.decode(bytes)).readMapping().get(key);
+                }
+                if (reindexed) {
+                    throw new IOException("The entry has changed since " + file + " was read, and it must be reloaded");
+                }
+                reindex(entries);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the value of " + key, e);
+        }
+    }
+
+    /**
+     * Read the bytes of an entry from the file, checking them against its hash
+     *
+     * @param entries The entries of the file
+     * @param index   The index of the entry
+     * @return A buffer of the bytes of the entry, or {@code null} if the entry is no longer at its offset
+     * @throws IOException If the file could not be read
+     */
+    @Nullable
+    private ByteBuffer readEntry(@NotNull Entries entries, int index) throws IOException {
+        if (entries.offsets[index] < 0) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer bytes = read(channel, entries.offsets[index], entries.lengths[index]);
+            return bytes != null && hash(bytes, 0, entries.lengths[index]) == entries.hashes[index] ? bytes : null;
+        }
+    }
+
+    /**
+     * Read and parse a run of adjacent entries together, up to {@link #BATCH_BYTES} long, through a single read of the
+     * file
+     *
+     * @param entries The entries of the file
+     * @param first   The index of the first entry of the run
+     * @return The values of the entries of the run, or an empty map if they could not be read together, in which case
+     * they are read one at a time
+     */
+    @NotNull
+    private Map<String, Object> readBatch(@NotNull Entries entries, int first) {
+        if (entries.values != null) {
+            return entries.values;
+        }
+        final int start = entries.offsets[first];
+        if (start < 0) {
+            return Map.of();
+        }
+        int last = first;
+        while (last + 1 < entries.keys.length
+                && entries.offsets[last + 1] == entries.offsets[last] + entries.lengths[last]
+                && entries.offsets[last + 1] + entries.lengths[last + 1] - start <= BATCH_BYTES) {
+            last++;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer bytes = read(channel, start, entries.offsets[last] + entries.lengths[last] - start);
+            if (bytes == null) {
+                return Map.of();
+            }
+            for (int entry = first; entry <= last; entry++) {
+                final int offset = entries.offsets[entry] - start;
+                if (hash(bytes, offset, offset + entries.lengths[entry]) != entries.hashes[entry]) {
+                    return Map.of();
+                }
+            }
+            return YamlEventReader.of(FileInput.decode(bytes)).readMapping();
+        } catch (IOException e) {
+            // The entries are read one at a time instead, reporting the failure for the entry it belongs to
+            return Map.of();
+        }
+    }
+
+    /**
+     * Read a range of bytes from the file
+     *
+     * @param channel The channel of the file
+     * @param offset  The offset of the range
+     * @param length  The length of the range
+     * @return A buffer of the bytes, or {@code null} if the file ends before the range does
+     * @throws IOException If the file could not be read
+     */
+    @Nullable
+    private static ByteBuffer read(@NotNull FileChannel channel, int offset, int length) throws IOException {
+        final ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, offset + bytes.position()) < 0) {
+                return null;
+            }
+        }
+        return bytes.flip();
+    }
+
+    /**
+     * Index the file again, moving the offset of each entry whose bytes are unchanged to where they now are
+     *
+     * @param previous The entries that were read from, which are kept if the file has already been indexed again
+     * @throws IOException If the file could not be read
+     */
+    private synchronized void reindex(@NotNull Entries previous) throws IOException {
+        if (entries != previous) {
+            return;
+        }
+        final Index index = Index.of(FileInput.map(file));
+        final int[] moved = new int[previous.keys.length];
+        for (int entry = 0; entry < previous.keys.length; entry++) {
+            final Integer current = index != null ? index.indices.get(previous.keys[entry]) : null;
+            moved[entry] = current != null && index.hashes[current] == previous.hashes[entry]
+                    && index.offsets[current + 1] - index.offsets[current] == previous.lengths[entry]
+                    ? index.offsets[current] : -1;
+        }
+        entries = new Entries(previous, moved);
+    }
+
+    /**
+     * Write YAML serialized from this map to a file, indexing the map again from the written bytes if they replace the
+     * file it reads from, so that its entries can still be read in their new formatting
+     * <p>
+     * Entries are not read while the file is being replaced; reads that find it replaced wait until it is indexed
+     * again.
+     *
+     * @param target The file to write
+     * @param bytes  The serialized YAML
+     * @param fsync  Whether to sync the contents to the storage device before moving them into place
+     * @throws IOException If the file could not be written
+     */
+    synchronized void save(@NotNull Path target, byte @NotNull [] bytes, boolean fsync) throws IOException {
+        AtomicFileWriter.write(target, bytes, fsync);
+        if (!isFile(target)) {
+            return;
+        }
+        final ByteBuffer written = ByteBuffer.wrap(bytes);
+        final Index index = Index.of(written);
+        entries = index != null ? new Entries(index)
+                : new Entries(YamlEventReader.of(FileInput.decode(written)).readMapping());
+    }
+
+    /**
+     * Check whether a path locates the file this map reads from
+     *
+     * @param path The path
+     * @return {@code true} if the path locates the file
+     */
+    private boolean isFile(@NotNull Path path) {
+        if (path.toAbsolutePath().normalize().equals(file.toAbsolutePath().normalize())) {
+            return true;
+        }
+        try {
+            return Files.isSameFile(path, file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get the keys whose entries differ between this map and a previously read lazy map, without parsing their values.
+     * Entries are compared by the hashes of their bytes, so entries whose formatting changed are included
+     *
+     * @param previous The previously read map
+     * @return The changed keys
+     */
+    @NotNull
+    Set<String> getChangedKeys(@NotNull LazyRootedMap previous) {
+        final Entries entries = this.entries;
+        final Entries previousEntries = previous.entries;
+        final Set<String> changed = new LinkedHashSet<>();
+        for (int index = 0; index < entries.keys.length; index++) {
+            final String key = entries.keys[index];
+            final Integer previousIndex = previousEntries.indices.get(key);
+            if (previousIndex == null) {
+                changed.add(key);
+            } else if (entries.values != null || previousEntries.values != null) {
+                if (!Objects.equals(get(key), previous.get(key))) {
+                    changed.add(key);
+                }
+            } else if (entries.hashes[index] != previousEntries.hashes[previousIndex]
+                    || entries.lengths[index] != previousEntries.lengths[previousIndex]) {
+                changed.add(key);
+            }
+        }
+        for (final String key : previousEntries.keys) {
+            if (!entries.indices.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+        return entries.indices.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return entries.keys.length;
+    }
+
+    @Override
+    @NotNull
+    public Set<String> keySet() {
+        final Entries entries = this.entries;
+        return new AbstractSet<>() {
+            @Override
+            @NotNull
+            public Iterator<String> iterator() {
+                return Arrays.asList(entries.keys).iterator();
+            }
+
+            @Override
+            public boolean contains(@Nullable Object key) {
+                return entries.indices.containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return entries.keys.length;
+            }
+        };
+    }
+
+    @Override
+    @NotNull
+    public Set<Map.Entry<String, Object>> entrySet() {
+        final Entries entries = this.entries;
+        return new AbstractSet<>() {
+            @Override
+            @NotNull
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                final Iterator<String> iterator = Arrays.asList(entries.keys).iterator();
+                return new Iterator<>() {
+                    @NotNull
+                    private Map<String, Object> batch = Map.of();
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        final String key = iterator.next();
+                        if (!batch.containsKey(key)) {
+                            final Entries current = LazyRootedMap.this.entries;
+                            final Integer index = current.indices.get(key);
+                            batch = index != null ? readBatch(current, index) : Map.of();
+                        }
+                        return new AbstractMap.SimpleImmutableEntry<>(key,
+                                batch.containsKey(key) ? batch.get(key) : get(key));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.keys.length;
+            }
+        };
+    }
+
+    /**
+     * Hash a range of bytes with 64-bit FNV-1a
+     *
+     * @param buffer The buffer of bytes
+     * @param start  The offset of the start of the range
+     * @param end    The offset of the end of the range
+     * @return The hash
+     */
+    private static long hash(@NotNull ByteBuffer buffer, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int position = start; position < end; position++) {
+            hash = (hash ^ (buffer.get(position) & 0xFF)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static boolean hasBom(@NotNull ByteBuffer buffer) {
+        return buffer.limit() >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB
+                && buffer.get(2) == (byte) 0xBF;
+    }
+
+    private static boolean isSeparator(@NotNull ByteBuffer buffer, int position, int lineEnd) {
+        return position >= lineEnd || buffer.get(position) == ' ' || buffer.get(position) == '\t'
+                || buffer.get(position) == '\r';
+    }
+
+    private static boolean isMarker(@NotNull ByteBuffer buffer, int lineStart, int lineEnd, byte marker) {
+        return lineEnd - lineStart >= 3 && buffer.get(lineStart) == marker && buffer.get(lineStart + 1) == marker
+                && buffer.get(lineStart + 2) == marker && isBlank(buffer, lineStart + 3, lineEnd);
+    }
+
+    private static boolean isBlank(@NotNull ByteBuffer buffer, int start, int end) {
+        for (int position = start; position < end; position++) {
+            final byte b = buffer.get(position);
+            if (b == '#' && (position == start || buffer.get(position - 1) == ' '
+                    || buffer.get(position - 1) == '\t' || buffer.get(position - 1) == '\n')) {
+                while (position + 1 < end && buffer.get(position + 1) != '\n') {
+                    position++;
+                }
+                continue;
+            }
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
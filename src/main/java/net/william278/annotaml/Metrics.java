@@ -0,0 +1,88 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * <b>Internal</b> - The registry of {@link AnnotamlMetrics}, which phases are recorded to
+ * <p>
+ * Phases are timed with {@link #start()} and {@link #record}; while no metrics are registered, {@link #start()} returns
+ * {@code 0} without reading the clock and recording is skipped.
+ */
+@ApiStatus.Internal
+final class Metrics {
+
+    private static final AnnotamlMetrics[] NONE = new AnnotamlMetrics[0];
+
+    @NotNull
+    private static volatile AnnotamlMetrics[] registered = NONE;
+
+    private Metrics() {
+    }
+
+    static synchronized void add(@NotNull AnnotamlMetrics metrics) {
+        final AnnotamlMetrics[] current = registered;
+        final AnnotamlMetrics[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = metrics;
+        registered = updated;
+    }
+
+    static synchronized void remove(@NotNull AnnotamlMetrics metrics) {
+        registered = Arrays.stream(registered).filter(other -> other != metrics).toArray(AnnotamlMetrics[]::new);
+    }
+
+    /**
+     * Start timing a phase
+     *
+     * @return The start time of the phase, or {@code 0} if no metrics are registered
+     */
+    static long start() {
+        return registered.length == 0 ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Record a completed phase to every registered {@link AnnotamlMetrics}
+     *
+     * @param phase       The phase
+     * @param objectClass The class being read or written
+     * @param file        The file being read or written, if known
+     * @param start       The start time returned by {@link #start()}
+     * @param bytes       The number of bytes read or written, or {@code -1} if not known
+     * @param keys        The number of keys read or written, or {@code -1} if not known
+     */
+    static void record(@NotNull AnnotamlMetrics.Phase phase, @NotNull Class<?> objectClass, @Nullable Path file,
+                       long start, long bytes, int keys) {
+        if (start == 0) {
+            return;
+        }
+        final AnnotamlMetrics[] metrics = registered;
+        final long nanos = System.nanoTime() - start;
+        for (final AnnotamlMetrics listener : metrics) {
+            listener.record(phase, objectClass, file, nanos, bytes, keys);
+        }
+    }
+
+}
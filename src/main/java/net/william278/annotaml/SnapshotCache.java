@@ -0,0 +1,480 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import dev.dejvokep.boostedyaml.block.Block;
+import dev.dejvokep.boostedyaml.block.implementation.Section;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * <b>Internal</b> - Caches the values read from YAML files in a compact binary snapshot, so that unchanged files can be
+ * loaded without parsing them
+ * <p>
+ * Snapshots are stored next to their file, or in the {@link #setDirectory(Path) cache directory} if one is set. Each
+ * snapshot records the size, modification time and SHA-256 hash of the file it was read from, and the keys and types of
+ * the class it was read as; a snapshot is only used if all of these still match. The file itself is only read to check
+ * its hash when its size and modification time cannot be trusted alone: when it was modified so shortly before the
+ * snapshot was taken that a later change could have kept the same modification time.
+ */
+@ApiStatus.Internal
+final class SnapshotCache {
+
+    private static final int MAGIC = 0x41594D53;
+    private static final int VERSION = 2;
+
+    /**
+     * <b>Internal</b> - How long after a file was modified a snapshot of it must be taken for the modification time to
+     * be trusted, covering the coarsest timestamp granularity of common file systems
+     */
+    private static final long AMBIGUOUS_MILLIS = 2000;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte BIG_INTEGER = 7;
+    private static final byte BYTES = 8;
+    private static final byte INT_ARRAY = 9;
+    private static final byte LONG_ARRAY = 10;
+    private static final byte DOUBLE_ARRAY = 11;
+    private static final byte LIST = 12;
+    private static final byte MAP = 13;
+
+    /**
+     * <b>Internal</b> - The directory to store snapshots in, or {@code null} to store them next to their file
+     */
+    @Nullable
+    private static volatile Path directory;
+
+    private SnapshotCache() {
+    }
+
+    /**
+     * Set the directory to store snapshots in
+     *
+     * @param directory The directory, or {@code null} to store snapshots next to their file
+     */
+    static void setDirectory(@Nullable Path directory) {
+        SnapshotCache.directory = directory == null ? null : directory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Read a file, from its snapshot if it has a valid one, otherwise by parsing it and storing a new snapshot
+     *
+     * @param defaults Default values to use if the YAML does not contain a value for a key
+     * @param file     The file to read
+     * @param <T>      The type of the object to read
+     * @return A {@link YamlObjectMap} of the read object
+     * @throws IllegalArgumentException If the object type is not annotated with {@link YamlFile}
+     * @throws IOException              If the file could not be read or parsed
+     */
+    @NotNull
+    static <T> YamlObjectMap<T> read(@NotNull T defaults, @NotNull Path file) throws IllegalArgumentException,
+            IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        final long recorded = System.currentTimeMillis();
+        final Path snapshot = locate(file);
+
+        final YamlObjectMap<T> map = new YamlObjectMap<>(defaults);
+        final long start = Metrics.start();
+        final Snapshot loaded = load(snapshot, map.getModel(), file, attributes);
+        if (loaded != null) {
+            map.clear();
+            map.putAll(loaded.values);
+            map.compactValues();
+            map.setSource(file, attributes);
+            Metrics.record(AnnotamlMetrics.Phase.READ, map.getObjectClass(), file, start, attributes.size(),
+                    map.getValues().size());
+
+            // Once the file has been checked by its hash, record it again so that later reads can trust its timestamp
+            if (loaded.verified) {
+                store(snapshot, map, new Source(attributes, recorded, loaded.source.hash));
+            }
+            return map;
+        }
+
+        final ByteBuffer yaml = FileInput.read(file);
+        final YamlObjectMap<T> parsed = YamlObjectMap.parse(defaults, yaml, file);
+        parsed.setSource(file, attributes);
+        store(snapshot, parsed, new Source(attributes, recorded, AtomicFileWriter.hash(yaml)));
+        return parsed;
+    }
+
+    /**
+     * Get the path of the snapshot of a file
+     *
+     * @param file The file
+     * @return The path of its snapshot
+     */
+    @NotNull
+    static Path locate(@NotNull Path file) {
+        final Path absolute = file.toAbsolutePath().normalize();
+        final Path cacheDirectory = directory;
+        if (cacheDirectory == null) {
+            return absolute.resolveSibling("." + absolute.getFileName() + ".snapshot");
+        }
+        final byte[] hash = AtomicFileWriter.hash(
+                ByteBuffer.wrap(absolute.toString().getBytes(StandardCharsets.UTF_8)));
+        final StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            name.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+        }
+        return cacheDirectory.resolve(name.append(".snapshot").toString());
+    }
+
+    /**
+     * Load the snapshot of a file, if it is still valid for the file and class
+     *
+     * @param snapshot   The path of the snapshot
+     * @param model      The model of the class the file is read as
+     * @param file       The file
+     * @param attributes The current attributes of the file
+     * @return The snapshot, or {@code null} if there is none, or it is no longer valid
+     */
+    @Nullable
+    private static Snapshot load(@NotNull Path snapshot, @NotNull YamlClassModel<?> model, @NotNull Path file,
+                                 @NotNull BasicFileAttributes attributes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(snapshot)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !in.readUTF().equals(model.getObjectClass().getName()) || in.readInt() != signature(model)) {
+                return null;
+            }
+            final Source source = Source.read(in);
+            if (!source.matches(attributes)) {
+                return null;
+            }
+            final boolean verified = source.isAmbiguous();
+            if (verified && !Arrays.equals(source.hash, AtomicFileWriter.hash(FileInput.read(file)))) {
+                return null;
+            }
+
+            final int size = in.readInt();
+            final Map<String, Object> values = new LinkedHashMap<>(ValueConverter.capacity(size));
+            for (int i = 0; i < size; i++) {
+                values.put(readString(in), readValue(in));
+            }
+            return new Snapshot(source, values, verified);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // The snapshot is unreadable or corrupt, and will be replaced
+            return null;
+        }
+    }
+
+    /**
+     * Store a snapshot of a read map. Maps containing values that cannot be encoded are not stored, and failures to
+     * write the snapshot are ignored, as the file can always be parsed instead
+     *
+     * @param snapshot The path to store the snapshot at
+     * @param map      The read map
+     * @param source   The file the map was read from
+     */
+    private static void store(@NotNull Path snapshot, @NotNull YamlObjectMap<?> map, @NotNull Source source) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(map.getModel().getObjectClass().getName());
+                out.writeInt(signature(map.getModel()));
+                source.write(out);
+                final Map<String, Object> values = map.getValues();
+                out.writeInt(values.size());
+                for (final Map.Entry<String, Object> entry : values.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeValue(out, entry.getValue());
+                }
+            }
+            AtomicFileWriter.replace(snapshot, bytes.toByteArray(), false);
+        } catch (IOException e) {
+            // The file will be parsed again next time
+        }
+    }
+
+    /**
+     * Get a signature of the keys and types of the fields of a class, so that snapshots are not used once they change
+     *
+     * @param model The model of the class
+     * @return The signature
+     */
+    private static int signature(@NotNull YamlClassModel<?> model) {
+        int signature = Boolean.hashCode(model.isRootedMap());
+        for (final YamlClassModel.FieldModel field : model.getFields()) {
+            signature = 31 * signature + field.getKey().hashCode();
+            signature = 31 * signature + field.getType().getName().hashCode();
+        }
+        return signature;
+    }
+
+    private static void writeValue(@NotNull DataOutputStream out, @Nullable Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeString(out, value.toString());
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            out.writeInt(((byte[]) value).length);
+            out.write((byte[]) value);
+        } else if (value instanceof int[]) {
+            out.writeByte(INT_ARRAY);
+            out.writeInt(((int[]) value).length);
+            for (final int element : (int[]) value) {
+                out.writeInt(element);
+            }
+        } else if (value instanceof long[]) {
+            out.writeByte(LONG_ARRAY);
+            out.writeInt(((long[]) value).length);
+            for (final long element : (long[]) value) {
+                out.writeLong(element);
+            }
+        } else if (value instanceof double[]) {
+            out.writeByte(DOUBLE_ARRAY);
+            out.writeInt(((double[]) value).length);
+            for (final double element : (double[]) value) {
+                out.writeDouble(element);
+            }
+        } else if (value instanceof List) {
+            out.writeByte(LIST);
+            out.writeInt(((List<?>) value).size());
+            for (final Object element : (List<?>) value) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Section) {
+            final Map<Object, Block<?>> blocks = ((Section) value).getStoredValue();
+            out.writeByte(MAP);
+            out.writeInt(blocks.size());
+            for (final Map.Entry<Object, Block<?>> entry : blocks.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue() instanceof Section ? entry.getValue()
+                        : entry.getValue().getStoredValue());
+            }
+        } else if (value instanceof Map) {
+            out.writeByte(MAP);
+            out.writeInt(((Map<?, ?>) value).size());
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+    }
+
+    @Nullable
+    private static Object readValue(@NotNull DataInputStream in) throws IOException {
+        final byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case BOOLEAN:
+                return in.readBoolean();
+            case BIG_INTEGER:
+                return new BigInteger(readString(in));
+            case BYTES: {
+                final byte[] array = new byte[in.readInt()];
+                in.readFully(array);
+                return array;
+            }
+            case INT_ARRAY: {
+                final int[] array = new int[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readInt();
+                }
+                return array;
+            }
+            case LONG_ARRAY: {
+                final long[] array = new long[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readLong();
+                }
+                return array;
+            }
+            case DOUBLE_ARRAY: {
+                final double[] array = new double[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readDouble();
+                }
+                return array;
+            }
+            case LIST: {
+                final int size = in.readInt();
+                final List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case MAP: {
+                final int size = in.readInt();
+                final Map<String, Object> map = new LinkedHashMap<>(ValueConverter.capacity(size));
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(in), readValue(in));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private static void writeString(@NotNull DataOutputStream out, @NotNull String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @NotNull
+    private static String readString(@NotNull DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * <b>Internal</b> - The values of a valid snapshot, with the file it was read from
+     */
+    private static final class Snapshot {
+
+        @NotNull
+        private final Source source;
+
+        @NotNull
+        private final Map<String, Object> values;
+
+        /**
+         * <b>Internal</b> - Whether the file had to be checked against the hash of the snapshot
+         */
+        private final boolean verified;
+
+        private Snapshot(@NotNull Source source, @NotNull Map<String, Object> values, boolean verified) {
+            this.source = source;
+            this.values = values;
+            this.verified = verified;
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - The size, modification time and hash of the file a snapshot was read from, and when it was read
+     */
+    private static final class Source {
+
+        private final long size;
+        private final long modified;
+        private final long recorded;
+        private final byte @NotNull [] hash;
+
+        private Source(@NotNull BasicFileAttributes attributes, long recorded, byte @NotNull [] hash) {
+            this(attributes.size(), attributes.lastModifiedTime().toMillis(), recorded, hash);
+        }
+
+        private Source(long size, long modified, long recorded, byte @NotNull [] hash) {
+            this.size = size;
+            this.modified = modified;
+            this.recorded = recorded;
+            this.hash = hash;
+        }
+
+        @NotNull
+        private static Source read(@NotNull DataInputStream in) throws IOException {
+            final long size = in.readLong();
+            final long modified = in.readLong();
+            final long recorded = in.readLong();
+            final byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully(hash);
+            return new Source(size, modified, recorded, hash);
+        }
+
+        private void write(@NotNull DataOutputStream out) throws IOException {
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeLong(recorded);
+            out.writeByte(hash.length);
+            out.write(hash);
+        }
+
+        /**
+         * Check that a file still has the size and modification time it had when it was read
+         *
+         * @param attributes The current attributes of the file
+         * @return {@code true} if they match
+         */
+        private boolean matches(@NotNull BasicFileAttributes attributes) {
+            return size == attributes.size() && modified == attributes.lastModifiedTime().toMillis();
+        }
+
+        /**
+         * Check whether the file was read so soon after it was modified that a later change could have left its size
+         * and modification time the same, so that its contents must be checked against the hash
+         *
+         * @return {@code true} if the file must be checked against the hash
+         */
+        private boolean isAmbiguous() {
+            return recorded - modified < AMBIGUOUS_MILLIS;
+        }
+
+    }
+
+}
@@ -0,0 +1,517 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import dev.dejvokep.boostedyaml.block.Block;
+import dev.dejvokep.boostedyaml.block.implementation.Section;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import static dev.dejvokep.boostedyaml.utils.conversion.PrimitiveConversions.*;
+
+/**
+ * <b>Internal</b> - Converts a value read from YAML to the type of the field it is being written to
+ * <p>
+ * Converters are resolved once per pair of field type and value class, and cached.
+ */
+@ApiStatus.Internal
+abstract class ValueConverter {
+
+    /**
+     * <b>Internal</b> - Cache of resolved converters, by field type and then by value class
+     */
+    private static final ClassValue<Map<Class<?>, ValueConverter>> CONVERTERS = new ClassValue<>() {
+        @Override
+        protected Map<Class<?>, ValueConverter> computeValue(@NotNull Class<?> fieldType) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /**
+     * Converter for values that are already of the field type, or a compatible non-numeric primitive
+     */
+    private static final ValueConverter IDENTITY = new ValueConverter() {
+        @Override
+        @NotNull
+        Object convert(@NotNull Object value) {
+            return value;
+        }
+    };
+
+    /**
+     * Converter for values that cannot be converted to the field type
+     */
+    private static final ValueConverter UNSUPPORTED = new ValueConverter() {
+        @Override
+        @Nullable
+        Object convert(@NotNull Object value) {
+            return null;
+        }
+    };
+
+    /**
+     * Get the converter from a value class to a field type
+     *
+     * @param fieldType  The type of the field being written to
+     * @param valueClass The class of the value being written
+     * @return The converter
+     */
+    @NotNull
+    static ValueConverter of(@NotNull Class<?> fieldType, @NotNull Class<?> valueClass) {
+        return CONVERTERS.get(fieldType).computeIfAbsent(valueClass, source -> resolve(fieldType, source));
+    }
+
+    /**
+     * Get the converter from a value class to a {@link YamlCompact} field, which reads sections and maps into a
+     * {@link CompactMap}
+     *
+     * @param fieldType  The type of the field being written to
+     * @param valueClass The class of the value being written
+     * @return The converter
+     */
+    @NotNull
+    static ValueConverter ofCompact(@NotNull Class<?> fieldType, @NotNull Class<?> valueClass) {
+        if (fieldType.isAssignableFrom(CompactMap.class) && !LazyRootedMap.class.isAssignableFrom(valueClass)
+                && (Section.class.isAssignableFrom(valueClass) || Map.class.isAssignableFrom(valueClass))) {
+            return CompactMapConverter.INSTANCE;
+        }
+        return of(fieldType, valueClass);
+    }
+
+    @NotNull
+    private static ValueConverter resolve(@NotNull Class<?> fieldType, @NotNull Class<?> valueClass) {
+        if (YamlClassModel.isSection(fieldType)
+                && (Section.class.isAssignableFrom(valueClass) || Map.class.isAssignableFrom(valueClass))) {
+            return new ObjectConverter<>(YamlClassModel.ofSection(fieldType));
+        }
+        if (Section.class.isAssignableFrom(valueClass) || (Map.class.isAssignableFrom(valueClass)
+                && Map.class.isAssignableFrom(fieldType) && !fieldType.isAssignableFrom(valueClass))) {
+            return new MapConverter(fieldType);
+        }
+        if (fieldType.isEnum()) {
+            return new EnumConverter(fieldType, resolveValue(fieldType, valueClass));
+        }
+        if (List.class.isAssignableFrom(valueClass) && PrimitiveArrayConverter.supports(fieldType)) {
+            return new PrimitiveArrayConverter(fieldType);
+        }
+        return resolveValue(fieldType, valueClass);
+    }
+
+    @NotNull
+    private static ValueConverter resolveValue(@NotNull Class<?> fieldType, @NotNull Class<?> valueClass) {
+        if (fieldType.isAssignableFrom(valueClass)) {
+            return IDENTITY;
+        }
+        if (isNumber(valueClass) && isNumber(fieldType)) {
+            return NumberConverter.of(fieldType);
+        }
+        if (NON_NUMERIC_CONVERSIONS.containsKey(valueClass) && NON_NUMERIC_CONVERSIONS.containsKey(fieldType)) {
+            return fieldType == boolean.class && valueClass == Boolean.class ? BooleanConverter.INSTANCE : IDENTITY;
+        }
+        return UNSUPPORTED;
+    }
+
+    /**
+     * Get the initial capacity of a hash map that holds a number of entries without being resized
+     *
+     * @param size The number of entries
+     * @return The initial capacity
+     */
+    static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    /**
+     * Convert a value to the field type
+     *
+     * @param value The value to convert
+     * @return The converted value, or {@code null} if it cannot be converted
+     */
+    @Nullable
+    abstract Object convert(@NotNull Object value);
+
+    /**
+     * Convert a value and write it to a field
+     *
+     * @param accessor The accessor of the field to write to
+     * @param target   The object to write the field of
+     * @param value    The value to convert and write
+     * @return {@code true} if the value was written, or {@code false} if it could not be converted
+     * @throws IllegalAccessException If the field could not be accessed
+     */
+    boolean write(@NotNull FieldAccessor accessor, @NotNull Object target, @NotNull Object value)
+            throws IllegalAccessException {
+        final Object converted = convert(value);
+        if (converted == null) {
+            return false;
+        }
+        accessor.set(target, converted);
+        return true;
+    }
+
+    /**
+     * <b>Internal</b> - Copies a {@link Section} or map to the map type of the field
+     * <p>
+     * Sections are copied straight from their stored blocks into a target map presized to fit them.
+     */
+    private static final class MapConverter extends ValueConverter {
+
+        @NotNull
+        private final IntFunction<Map<String, Object>> factory;
+
+        @NotNull
+        private final Function<Map<String, ?>, Map<String, ?>> copier;
+
+        private MapConverter(@NotNull Class<?> fieldType) {
+            if (fieldType == TreeMap.class) {
+                this.factory = size -> new TreeMap<>();
+                this.copier = TreeMap::new;
+            } else if (fieldType == HashMap.class) {
+                this.factory = size -> new HashMap<>(capacity(size));
+                this.copier = HashMap::new;
+            } else if (fieldType == ConcurrentHashMap.class) {
+                this.factory = ConcurrentHashMap::new;
+                this.copier = ConcurrentHashMap::new;
+            } else {
+                this.factory = size -> new LinkedHashMap<>(capacity(size));
+                this.copier = fieldType == LinkedHashMap.class ? LinkedHashMap::new : Function.identity();
+            }
+        }
+
+        @Override
+        @NotNull
+        @SuppressWarnings("unchecked")
+        Object convert(@NotNull Object value) {
+            if (!(value instanceof Section)) {
+                return copier.apply((Map<String, ?>) value);
+            }
+
+            // Copy the value of each block, keeping nested sections as they are
+            final Map<Object, Block<?>> blocks = ((Section) value).getStoredValue();
+            final Map<String, Object> map = factory.apply(blocks.size());
+            blocks.forEach((key, block) -> map.put(String.valueOf(key),
+                    block instanceof Section ? block : block.getStoredValue()));
+            return map;
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - Copies a {@link Section} or map into a {@link CompactMap}, keeping nested sections as they are
+     */
+    private static final class CompactMapConverter extends ValueConverter {
+
+        private static final CompactMapConverter INSTANCE = new CompactMapConverter();
+
+        @Override
+        @NotNull
+        Object convert(@NotNull Object value) {
+            if (!(value instanceof Section)) {
+                return CompactMap.copyOf((Map<?, ?>) value);
+            }
+            final Map<Object, Block<?>> blocks = ((Section) value).getStoredValue();
+            final Map<String, Object> map = new LinkedHashMap<>(capacity(blocks.size()));
+            blocks.forEach((key, block) -> map.put(String.valueOf(key),
+                    block instanceof Section ? block : block.getStoredValue()));
+            return CompactMap.copyOf(map);
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - Reads a {@link Section} or map into a new instance of a {@link YamlSection} or
+     * {@link YamlFile} class, converting each value to the type of its field
+     */
+    private static final class ObjectConverter<T> extends ValueConverter {
+
+        @NotNull
+        private final YamlClassModel<T> model;
+
+        private ObjectConverter(@NotNull YamlClassModel<T> model) {
+            this.model = model;
+        }
+
+        @Override
+        @Nullable
+        Object convert(@NotNull Object value) {
+            try {
+                final T object = model.instantiate();
+                for (final YamlClassModel.FieldModel field : model.getFields()) {
+                    final Object child = model.isRootedMap() ? value : lookup(value, field);
+                    if (child == null) {
+                        continue;
+                    }
+                    if (!field.getConverter(child.getClass()).write(field.getAccessor(), object, child)) {
+                        return null;
+                    }
+                }
+                return object;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Unable to read section of type "
+                        + model.getObjectClass().getName(), e);
+            }
+        }
+
+        /**
+         * Look up the value of a field within a section or map, by the precompiled route of its key
+         *
+         * @param value The section or map
+         * @param field The field to look up the value of
+         * @return The value, or {@code null} if there is none
+         */
+        @Nullable
+        private static Object lookup(@NotNull Object value, @NotNull YamlClassModel.FieldModel field) {
+            if (value instanceof Section) {
+                return ((Section) value).get(field.getRoute());
+            }
+            Object current = value;
+            for (final String key : field.getPath()) {
+                if (current instanceof Section) {
+                    current = ((Section) current).get(key);
+                } else if (current instanceof Map) {
+                    current = ((Map<?, ?>) current).get(key);
+                } else {
+                    return null;
+                }
+            }
+            return current;
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - Looks up an enum constant by its name, falling back to a case-insensitive match
+     */
+    private static final class EnumConverter extends ValueConverter {
+
+        @NotNull
+        private final Map<String, Object> constants;
+
+        @NotNull
+        private final Map<String, Object> caseInsensitiveConstants;
+
+        @NotNull
+        private final ValueConverter fallback;
+
+        private EnumConverter(@NotNull Class<?> fieldType, @NotNull ValueConverter fallback) {
+            final Map<String, Object> constants = new HashMap<>();
+            final Map<String, Object> caseInsensitiveConstants = new HashMap<>();
+            for (final Object constant : fieldType.getEnumConstants()) {
+                final String name = ((Enum<?>) constant).name();
+                constants.put(name, constant);
+                caseInsensitiveConstants.putIfAbsent(name.toUpperCase(Locale.ROOT), constant);
+            }
+            this.constants = constants;
+            this.caseInsensitiveConstants = caseInsensitiveConstants;
+            this.fallback = fallback;
+        }
+
+        @Override
+        @Nullable
+        Object convert(@NotNull Object value) {
+            final String name = value.toString();
+            final Object constant = constants.get(name);
+            if (constant != null) {
+                return constant;
+            }
+            final Object caseInsensitiveConstant = caseInsensitiveConstants.get(name.toUpperCase(Locale.ROOT));
+            return caseInsensitiveConstant != null ? caseInsensitiveConstant : fallback.convert(value);
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - Narrows or widens a number to the numeric type of the field, writing primitives unboxed
+     */
+    private static class NumberConverter extends ValueConverter {
+
+        @NotNull
+        private final Class<?> fieldType;
+
+        private NumberConverter(@NotNull Class<?> fieldType) {
+            this.fieldType = fieldType;
+        }
+
+        @NotNull
+        private static ValueConverter of(@NotNull Class<?> fieldType) {
+            if (fieldType == int.class) {
+                return new NumberConverter(fieldType) {
+                    @Override
+                    boolean write(@NotNull FieldAccessor accessor, @NotNull Object target, @NotNull Object value)
+                            throws IllegalAccessException {
+                        accessor.setInt(target, ((Number) value).intValue());
+                        return true;
+                    }
+                };
+            } else if (fieldType == long.class) {
+                return new NumberConverter(fieldType) {
+                    @Override
+                    boolean write(@NotNull FieldAccessor accessor, @NotNull Object target, @NotNull Object value)
+                            throws IllegalAccessException {
+                        accessor.setLong(target, ((Number) value).longValue());
+                        return true;
+                    }
+                };
+            } else if (fieldType == double.class) {
+                return new NumberConverter(fieldType) {
+                    @Override
+                    boolean write(@NotNull FieldAccessor accessor, @NotNull Object target, @NotNull Object value)
+                            throws IllegalAccessException {
+                        accessor.setDouble(target, ((Number) value).doubleValue());
+                        return true;
+                    }
+                };
+            } else if (fieldType == float.class) {
+                return new NumberConverter(fieldType) {
+                    @Override
+                    boolean write(@NotNull FieldAccessor accessor, @NotNull Object target, @NotNull Object value)
+                            throws IllegalAccessException {
+                        accessor.setFloat(target, ((Number) value).floatValue());
+                        return true;
+                    }
+                };
+            }
+            return new NumberConverter(fieldType);
+        }
+
+        @Override
+        @NotNull
+        Object convert(@NotNull Object value) {
+            return convertNumber(value, fieldType);
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - Unboxes a list of numbers into an {@code int[]}, {@code long[]} or {@code double[]}, rejecting
+     * numbers that are out of range of the element type, or fractional for integer arrays
+     */
+    private static final class PrimitiveArrayConverter extends ValueConverter {
+
+        @NotNull
+        private final Class<?> fieldType;
+
+        private PrimitiveArrayConverter(@NotNull Class<?> fieldType) {
+            this.fieldType = fieldType;
+        }
+
+        private static boolean supports(@NotNull Class<?> fieldType) {
+            return fieldType == int[].class || fieldType == long[].class || fieldType == double[].class;
+        }
+
+        @Override
+        @Nullable
+        Object convert(@NotNull Object value) {
+            final List<?> list = (List<?>) value;
+            for (final Object element : list) {
+                if (!(element instanceof Number) || !fits((Number) element)) {
+                    return null;
+                }
+            }
+            final int size = list.size();
+            if (fieldType == int[].class) {
+                final int[] array = new int[size];
+                for (int i = 0; i < size; i++) {
+                    array[i] = ((Number) list.get(i)).intValue();
+                }
+                return array;
+            } else if (fieldType == long[].class) {
+                final long[] array = new long[size];
+                for (int i = 0; i < size; i++) {
+                    array[i] = ((Number) list.get(i)).longValue();
+                }
+                return array;
+            }
+            final double[] array = new double[size];
+            for (int i = 0; i < size; i++) {
+                array[i] = ((Number) list.get(i)).doubleValue();
+            }
+            return array;
+        }
+
+        /**
+         * Get whether a number fits the element type of the array without being truncated
+         *
+         * @param number The number
+         * @return If the number is in range of the element type, and integral for integer arrays
+         */
+        private boolean fits(@NotNull Number number) {
+            if (fieldType == double[].class) {
+                return true;
+            }
+            final boolean isInt = fieldType == int[].class;
+            if (number instanceof Integer || number instanceof Short || number instanceof Byte) {
+                return true;
+            }
+            if (number instanceof Long) {
+                return !isInt || number.longValue() == number.intValue();
+            }
+            if (number instanceof BigInteger) {
+                return ((BigInteger) number).bitLength() < (isInt ? 32 : 64);
+            }
+            if (number instanceof BigDecimal) {
+                try {
+                    final long value = ((BigDecimal) number).longValueExact();
+                    return !isInt || value == (int) value;
+                } catch (ArithmeticException e) {
+                    return false;
+                }
+            }
+
+            // Floating point numbers are only accepted if they hold an integer in range
+            final double value = number.doubleValue();
+            return value == Math.rint(value) && (isInt
+                    ? value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE
+                    : value >= -0x1p63 && value < 0x1p63);
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - Writes a {@link Boolean} to a primitive {@code boolean} field unboxed
+     */
+    private static final class BooleanConverter extends ValueConverter {
+
+        private static final BooleanConverter INSTANCE = new BooleanConverter();
+
+        @Override
+        @NotNull
+        Object convert(@NotNull Object value) {
+            return value;
+        }
+
+        @Override
+        boolean write(@NotNull FieldAccessor accessor, @NotNull Object target, @NotNull Object value)
+                throws IllegalAccessException {
+            accessor.setBoolean(target, (Boolean) value);
+            return true;
+        }
+
+    }
+
+}
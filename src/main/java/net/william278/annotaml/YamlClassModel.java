@@ -0,0 +1,805 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import dev.dejvokep.boostedyaml.route.Route;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * <b>Internal</b> - The resolved metadata of a {@link YamlFile} or {@link YamlSection}-annotated class: its mapped
+ * fields, their keys and comments, the file header, whether it is a rooted map and its zero-argument constructor.
+ * <p>
+ * Models are built once per class and cached for the lifetime of that class, so repeated loads, gets and saves of the
+ * same type do not repeat reflective lookups.
+ *
+ * @param <T> The type of object this model describes
+ */
+@ApiStatus.Internal
+final class YamlClassModel<T> {
+
+    /**
+     * <b>Internal</b> - Cache of built models, tied to the lifetime of each class, or of the failure to build the model
+     * of a class that cannot be mapped, so that it is not built again on each lookup
+     */
+    private static final ClassValue<Object> MODELS = new ClassValue<>() {
+        @Override
+        protected Object computeValue(@NotNull Class<?> type) {
+            try {
+                return new YamlClassModel<>(type);
+            } catch (IllegalArgumentException e) {
+                return e;
+            }
+        }
+    };
+
+    @NotNull
+    private final Class<T> objectClass;
+
+    private final boolean file;
+
+    private final boolean rootedMap;
+
+    @NotNull
+    private final String header;
+
+    @Nullable
+    private final Constructor<T> constructor;
+
+    @Nullable
+    private final YamlCodec<T> codec;
+
+    @NotNull
+    private final List<FieldModel> fields;
+
+    @NotNull
+    private final Map<String, List<String>> commentLines;
+
+    @NotNull
+    private final KeyNode keyTree;
+
+    private final boolean streamed;
+
+    private final boolean fsync;
+
+    private final boolean cached;
+
+    private final boolean mutable;
+
+    private final boolean binaryCache;
+
+    private final boolean lazy;
+
+    private final int lazyCacheSize;
+
+    /**
+     * Build the model of a class, from its generated {@link YamlCodec} if present, otherwise by reflection
+     *
+     * @param objectClass The class to build the model of
+     * @throws IllegalArgumentException If the class is not annotated with {@link YamlFile} or {@link YamlSection}
+     */
+    private YamlClassModel(@NotNull Class<T> objectClass) throws IllegalArgumentException {
+        final YamlFile yamlFile = objectClass.getAnnotation(YamlFile.class);
+        if (yamlFile == null && !objectClass.isAnnotationPresent(YamlSection.class)) {
+            throw new IllegalArgumentException("Object type must be annotated with @YamlFile or @YamlSection");
+        }
+        this.objectClass = objectClass;
+        this.file = yamlFile != null;
+        this.codec = findCodec(objectClass);
+
+        final List<FieldModel> fields = new ArrayList<>();
+        if (codec != null) {
+            this.rootedMap = codec.isRootedMap();
+            this.header = codec.getHeader();
+            this.constructor = null;
+            readCodecFields(codec, fields);
+        } else {
+            this.rootedMap = yamlFile != null && yamlFile.rootedMap();
+            this.header = yamlFile != null ? yamlFile.header() : "";
+            this.constructor = findConstructor(objectClass);
+            readDeclaredFields(objectClass, rootedMap, fields);
+        }
+        this.fields = Collections.unmodifiableList(fields);
+
+        // The header is placed as a comment above the first field, followed by any field comments
+        final Map<String, String> comments = new LinkedHashMap<>();
+        if (!fields.isEmpty() && !header.isEmpty()) {
+            comments.put(fields.get(0).getKey(), header);
+        }
+        for (final FieldModel field : fields) {
+            if (field.getComment() != null) {
+                comments.merge(field.getKey(), field.getComment(), (existing, comment) -> existing + "\n" + comment);
+            }
+        }
+        final Map<String, List<String>> commentLines = new LinkedHashMap<>();
+        comments.forEach((key, comment) -> commentLines.put(key, Arrays.stream(comment.split("\\r?\\n"))
+                .map(line -> " " + line.trim())
+                .collect(Collectors.toUnmodifiableList())));
+        this.commentLines = Collections.unmodifiableMap(commentLines);
+        this.keyTree = new KeyNode();
+        if (!rootedMap) {
+            fields.forEach(keyTree::add);
+        }
+        this.streamed = yamlFile != null && yamlFile.streamed();
+        this.fsync = yamlFile != null && yamlFile.fsync();
+        this.cached = yamlFile != null && yamlFile.cached();
+        this.mutable = yamlFile != null && yamlFile.mutable();
+        this.binaryCache = yamlFile != null && yamlFile.binaryCache();
+        this.lazy = rootedMap && yamlFile != null && yamlFile.lazy();
+        this.lazyCacheSize = yamlFile != null ? yamlFile.lazyCacheSize() : 0;
+    }
+
+    /**
+     * Read the fields of a class not annotated with {@link YamlIgnored}, resolving their keys and comments
+     *
+     * @param objectClass The class to read the fields of
+     * @param rootedMap   Whether the class is a rooted map, in which case only the first field is read
+     * @param fields      The list to add the read fields to
+     */
+    private static void readDeclaredFields(@NotNull Class<?> objectClass, boolean rootedMap,
+                                           @NotNull List<FieldModel> fields) {
+        for (final Field field : objectClass.getDeclaredFields()) {
+            if (field.isAnnotationPresent(YamlIgnored.class)) {
+                continue;
+            }
+
+            // If the field is annotated with @YamlKey, use the value as the key
+            final YamlKey yamlKey = field.getAnnotation(YamlKey.class);
+            final YamlComment yamlComment = field.getAnnotation(YamlComment.class);
+            fields.add(new FieldModel(
+                    field.getName(), field.getType(),
+                    rootedMap ? "" : yamlKey != null ? yamlKey.value() : field.getName(),
+                    yamlComment != null ? yamlComment.value() : null,
+                    FieldAccessor.of(field),
+                    field.isAnnotationPresent(YamlCompact.class)
+            ));
+
+            // Rooted maps are read and written to/from a single field
+            if (rootedMap) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Read the precomputed fields of a generated {@link YamlCodec}
+     *
+     * @param codec  The codec to read the fields of
+     * @param fields The list to add the read fields to
+     */
+    private static <T> void readCodecFields(@NotNull YamlCodec<T> codec, @NotNull List<FieldModel> fields) {
+        final String[] names = codec.getFieldNames();
+        final String[] keys = codec.getKeys();
+        final String[] comments = codec.getComments();
+        final Class<?>[] types = codec.getFieldTypes();
+        final boolean[] compact = codec.getCompactFields();
+        for (int i = 0; i < names.length; i++) {
+            fields.add(new FieldModel(names[i], types[i], keys[i], comments[i], FieldAccessor.of(codec, i),
+                    compact[i]));
+        }
+    }
+
+    /**
+     * Find the zero-argument constructor of a class
+     *
+     * @param objectClass The class to find the constructor of
+     * @return The constructor, or {@code null} if the class does not have one
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static <T> Constructor<T> findConstructor(@NotNull Class<T> objectClass) {
+        return (Constructor<T>) Arrays.stream(objectClass.getDeclaredConstructors())
+                .filter(constructor -> constructor.getParameterCount() == 0)
+                .peek(constructor -> constructor.setAccessible(true))
+                .findFirst().orElse(null);
+    }
+
+    /**
+     * Find and instantiate the generated {@link YamlCodec} of a class
+     *
+     * @param objectClass The class to find the codec of
+     * @return The codec, or {@code null} if none was generated for the class
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static <T> YamlCodec<T> findCodec(@NotNull Class<T> objectClass) {
+        final String codecName = objectClass.getName().replace('$', '_') + YamlCodec.SUFFIX;
+        try {
+            final Class<?> codecClass = Class.forName(codecName, true, objectClass.getClassLoader());
+            if (!YamlCodec.class.isAssignableFrom(codecClass)) {
+                return null;
+            }
+            final YamlCodec<T> codec = (YamlCodec<T>) codecClass.getDeclaredConstructor().newInstance();
+            return codec.getObjectClass() == objectClass ? codec : null;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unable to instantiate generated codec " + codecName, e);
+        }
+    }
+
+    /**
+     * Get the model of a class, building it if it has not been built yet
+     * <p>
+     * Once built, a model is found with a single cache lookup; the annotations of the class are only checked again if
+     * it cannot be mapped.
+     *
+     * @param objectClass The class to get the model of
+     * @param <T>         The type of the class
+     * @return The model of the class
+     * @throws IllegalArgumentException If the class is not annotated with {@link YamlFile}
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    static <T> YamlClassModel<T> of(@NotNull Class<T> objectClass) throws IllegalArgumentException {
+        final Object model = MODELS.get(objectClass);
+        if (model instanceof YamlClassModel && ((YamlClassModel<?>) model).file) {
+            return (YamlClassModel<T>) model;
+        }
+        if (!objectClass.isAnnotationPresent(YamlFile.class)) {
+            throw new IllegalArgumentException("Object type must be annotated with @YamlFile");
+        }
+        return ofSection(objectClass);
+    }
+
+    /**
+     * Get the model of a class mapped as a section within a file, building it if it has not been built yet
+     *
+     * @param objectClass The class to get the model of
+     * @param <T>         The type of the class
+     * @return The model of the class
+     * @throws IllegalArgumentException If the class is not annotated with {@link YamlSection} or {@link YamlFile}
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    static <T> YamlClassModel<T> ofSection(@NotNull Class<T> objectClass) throws IllegalArgumentException {
+        final Object model = MODELS.get(objectClass);
+        if (model instanceof IllegalArgumentException) {
+            final IllegalArgumentException failure = (IllegalArgumentException) model;
+            throw new IllegalArgumentException(failure.getMessage(), failure.getCause());
+        }
+        return (YamlClassModel<T>) model;
+    }
+
+    /**
+     * Get whether values of a type are mapped as a section, being annotated with {@link YamlSection} or
+     * {@link YamlFile}
+     *
+     * @param type The type to check
+     * @return If the type is a section type
+     */
+    static boolean isSection(@NotNull Class<?> type) {
+        return type.isAnnotationPresent(YamlSection.class) || type.isAnnotationPresent(YamlFile.class);
+    }
+
+    /**
+     * Convert an object to a map of its keys to values, as it is written, nesting dotted keys within maps. For rooted
+     * maps, this is the map itself
+     *
+     * @param object The object to convert
+     * @return The map of the object
+     * @throws IllegalAccessException If a field could not be read
+     */
+    @Nullable
+    Map<String, Object> toMap(@NotNull T object) throws IllegalAccessException {
+        if (rootedMap) {
+            return fields.isEmpty() ? null : castMap(fields.get(0).read(object));
+        }
+        final Map<String, Object> map = new LinkedHashMap<>();
+        for (final FieldModel field : fields) {
+            final Object value = field.read(object);
+            if (value == null) {
+                continue;
+            }
+            Map<String, Object> parent = map;
+            final String[] route = field.getPath();
+            for (int i = 0; i < route.length - 1; i++) {
+                final Object child = parent.get(route[i]);
+                if (child instanceof Map) {
+                    parent = castMap(child);
+                } else {
+                    final Map<String, Object> branch = new LinkedHashMap<>();
+                    parent.put(route[i], branch);
+                    parent = branch;
+                }
+            }
+            parent.put(route[route.length - 1], value);
+        }
+        return map;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(@Nullable Object map) {
+        return (Map<String, Object>) map;
+    }
+
+    /**
+     * Instantiate a new object of the class using its zero-argument constructor
+     *
+     * @return A new instance of the class
+     * @throws InvocationTargetException If the constructor throws an exception
+     * @throws InstantiationException    If the class is abstract
+     * @throws IllegalAccessException    If the constructor is inaccessible
+     * @throws IllegalArgumentException  If the class does not have a zero-argument constructor
+     */
+    @NotNull
+    T instantiate() throws InvocationTargetException, InstantiationException, IllegalAccessException,
+            IllegalArgumentException {
+        if (codec != null) {
+            return codec.instantiate();
+        }
+        if (constructor == null) {
+            throw new IllegalArgumentException("Class type must have a zero-argument constructor: " + objectClass.getName());
+        }
+        return constructor.newInstance();
+    }
+
+    /**
+     * Create a deep copy of an object, copying the value of each mapped field to a new instance. Collections, maps,
+     * arrays and sections are copied recursively, so that the copy shares no mutable state with the source; read-only
+     * {@link LazyRootedMap lazy} and {@link CompactMap compact} maps and other values are shared
+     *
+     * @param source The object to copy
+     * @return The copy
+     * @throws InvocationTargetException If the constructor throws an exception
+     * @throws InstantiationException    If the class is abstract
+     * @throws IllegalAccessException    If the constructor or a field is inaccessible
+     * @throws IllegalArgumentException  If the class does not have a zero-argument constructor, or a field could not be
+     *                                   copied
+     */
+    @NotNull
+    T copy(@NotNull T source) throws InvocationTargetException, InstantiationException, IllegalAccessException,
+            IllegalArgumentException {
+        final T copy = instantiate();
+        for (final FieldModel field : fields) {
+            final Object value = field.getAccessor().get(source);
+            Object copied = copyValue(value);
+            if (copied != null && !field.getType().isInstance(copied)) {
+                copied = copyInstance(field, value);
+            }
+            field.getAccessor().set(copy, copied);
+        }
+        return copy;
+    }
+
+    /**
+     * Deep copy a value, copying lists to {@link ArrayList}s, sets to {@link LinkedHashSet}s or {@link TreeSet}s and
+     * maps to {@link LinkedHashMap}s or {@link TreeMap}s
+     *
+     * @param value The value to copy
+     * @return The copy, or the value itself if it is immutable or not a collection, map, array or section
+     * @throws InvocationTargetException If a section could not be instantiated
+     * @throws InstantiationException    If a section could not be instantiated
+     * @throws IllegalAccessException    If a section could not be instantiated or read
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(@Nullable Object value) throws InvocationTargetException, InstantiationException,
+            IllegalAccessException {
+        if (value == null || value instanceof LazyRootedMap || value instanceof CompactMap) {
+            return value;
+        }
+        if (value instanceof Map) {
+            final Map<Object, Object> copy = value instanceof SortedMap
+                    ? new TreeMap<>(((SortedMap<Object, ?>) value).comparator())
+                    : new LinkedHashMap<>(((Map<?, ?>) value).size());
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), copyValue(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof Collection) {
+            final Collection<Object> copy = value instanceof SortedSet
+                    ? new TreeSet<>(((SortedSet<Object>) value).comparator())
+                    : value instanceof Set ? new LinkedHashSet<>() : new ArrayList<>(((Collection<?>) value).size());
+            for (final Object element : (Collection<?>) value) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        }
+        if (value instanceof Object[]) {
+            final Object[] copy = ((Object[]) value).clone();
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = copyValue(copy[i]);
+            }
+            return copy;
+        }
+        if (value.getClass().isArray()) {
+            final int length = Array.getLength(value);
+            final Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            return copy;
+        }
+        if (isSection(value.getClass())) {
+            return ofSection((Class<Object>) value.getClass()).copy(value);
+        }
+        return value;
+    }
+
+    /**
+     * Deep copy the collection or map of a field declared as a type that its {@link #copyValue(Object) copy} is not,
+     * such as a {@link LinkedList}, into a new instance of the class of the value
+     *
+     * @param field The field the value was read from
+     * @param value The value to copy
+     * @return The copy
+     * @throws InvocationTargetException If a section could not be instantiated
+     * @throws InstantiationException    If a section could not be instantiated
+     * @throws IllegalAccessException    If a section could not be instantiated or read
+     * @throws IllegalArgumentException  If the class of the value has no accessible zero-argument constructor
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    private static Object copyInstance(@NotNull FieldModel field, @NotNull Object value) throws
+            InvocationTargetException, InstantiationException, IllegalAccessException, IllegalArgumentException {
+        final Object copy;
+        try {
+            copy = value.getClass().getConstructor().newInstance();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Unable to copy field " + field.getName() + " of type "
+                    + value.getClass().getName(), e);
+        }
+        if (value instanceof Map) {
+            ((Map<Object, Object>) copy).putAll((Map<?, ?>) copyValue(value));
+        } else {
+            ((Collection<Object>) copy).addAll((Collection<?>) copyValue(value));
+        }
+        return copy;
+    }
+
+    @NotNull
+    Class<T> getObjectClass() {
+        return objectClass;
+    }
+
+    boolean isRootedMap() {
+        return rootedMap;
+    }
+
+    @NotNull
+    String getHeader() {
+        return header;
+    }
+
+    /**
+     * Get the mapped fields of the class, in declaration order. For rooted maps, this is only the rooted map field.
+     *
+     * @return The mapped fields of the class
+     */
+    @NotNull
+    List<FieldModel> getFields() {
+        return fields;
+    }
+
+    /**
+     * Get whether files of this class should be read with the streaming parser
+     *
+     * @return If {@link YamlFile#streamed()} is set
+     */
+    boolean isStreamed() {
+        return streamed;
+    }
+
+    /**
+     * Get whether saved files should be synced to disk before they are moved into place
+     *
+     * @return If {@link YamlFile#fsync()} is set
+     */
+    boolean isFsync() {
+        return fsync;
+    }
+
+    /**
+     * Get whether the object read from a file should be cached
+     *
+     * @return If {@link YamlFile#cached()} is set
+     */
+    boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Get whether objects of the class may be modified, and so must be copied when shared
+     *
+     * @return If {@link YamlFile#mutable()} is set
+     */
+    boolean isMutable() {
+        return mutable;
+    }
+
+    /**
+     * Get whether the values read from a file should be kept in a binary snapshot
+     *
+     * @return If {@link YamlFile#binaryCache()} is set
+     */
+    boolean isBinaryCache() {
+        return binaryCache;
+    }
+
+    /**
+     * Get whether the class is a rooted map that should be read lazily
+     *
+     * @return If {@link YamlFile#lazy()} is set on a rooted map
+     */
+    boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Get the number of parsed values of a lazy rooted map to cache
+     *
+     * @return The value of {@link YamlFile#lazyCacheSize()}
+     */
+    int getLazyCacheSize() {
+        return lazyCacheSize;
+    }
+
+    /**
+     * Get the tree of the dotted keys of each field, split by their route separator ({@code .}), in field order
+     *
+     * @return The root node of the key tree. Empty for rooted maps
+     */
+    @NotNull
+    KeyNode getKeyTree() {
+        return keyTree;
+    }
+
+    /**
+     * Get the block comment lines to place above each key, including the header above the first key
+     * <p>
+     * Lines are trimmed and prefixed with a space, ready to be emitted after the comment marker.
+     *
+     * @return Map of keys to their comment lines
+     */
+    @NotNull
+    Map<String, List<String>> getCommentLines() {
+        return commentLines;
+    }
+
+    /**
+     * <b>Internal</b> - A field mapped to a key within a {@link YamlFile}
+     */
+    static final class FieldModel {
+
+        @NotNull
+        private final String name;
+
+        @NotNull
+        private final Class<?> type;
+
+        @NotNull
+        private final String key;
+
+        /**
+         * The key, resolved into a route once, so that documents do not parse it again on each lookup
+         */
+        @Nullable
+        private final Route route;
+
+        /**
+         * The key, split by its route separator, for looking up values in plain maps
+         */
+        @NotNull
+        private final String[] path;
+
+        @Nullable
+        private final String comment;
+
+        @NotNull
+        private final FieldAccessor accessor;
+
+        private final boolean compact;
+
+        /**
+         * The converter last used to write to this field, with the value class it was resolved for
+         */
+        @Nullable
+        private Conversion lastConversion;
+
+        private FieldModel(@NotNull String name, @NotNull Class<?> type, @NotNull String key,
+                           @Nullable String comment, @NotNull FieldAccessor accessor, boolean compact) {
+            this.name = name;
+            this.type = type;
+            this.key = key;
+            this.route = key.isEmpty() ? null : Route.fromString(key, KeyNode.SEPARATOR);
+            this.path = key.split("\\.", -1);
+            this.comment = comment;
+            this.accessor = accessor;
+            this.compact = compact;
+        }
+
+        @NotNull
+        String getName() {
+            return name;
+        }
+
+        @NotNull
+        Class<?> getType() {
+            return type;
+        }
+
+        @NotNull
+        String getKey() {
+            return key;
+        }
+
+        /**
+         * Get the precompiled route of the key of this field
+         *
+         * @return The route of the key
+         * @throws IllegalStateException If the field is the field of a rooted map, which has no key
+         */
+        @NotNull
+        Route getRoute() throws IllegalStateException {
+            if (route == null) {
+                throw new IllegalStateException("Rooted map field has no route: " + name);
+            }
+            return route;
+        }
+
+        /**
+         * Get the key of this field, split by its route separator ({@code .})
+         *
+         * @return The segments of the key
+         */
+        @NotNull
+        String[] getPath() {
+            return path;
+        }
+
+        @Nullable
+        String getComment() {
+            return comment;
+        }
+
+        @NotNull
+        FieldAccessor getAccessor() {
+            return accessor;
+        }
+
+        /**
+         * Get whether the values of this field are read into a {@link CompactMap}
+         *
+         * @return If the field is annotated with {@link YamlCompact}
+         */
+        boolean isCompact() {
+            return compact;
+        }
+
+        /**
+         * Read the value of this field from an object, as it is written: enums by their name, and sections as maps of
+         * their keys to values
+         *
+         * @param target The object to read the field of
+         * @return The value of the field, or {@code null} if it is not set
+         * @throws IllegalAccessException If the field could not be read
+         */
+        @Nullable
+        @SuppressWarnings("unchecked")
+        Object read(@NotNull Object target) throws IllegalAccessException {
+            final Object value = accessor.get(target);
+            if (value == null) {
+                return null;
+            }
+            if (type.isEnum()) {
+                return value.toString();
+            }
+            if (isSection(type)) {
+                return ofSection((Class<Object>) type).toMap(value);
+            }
+            return value;
+        }
+
+        /**
+         * Get the converter for writing values of a class to this field
+         *
+         * @param valueClass The class of the value being written
+         * @return The converter
+         */
+        @NotNull
+        ValueConverter getConverter(@NotNull Class<?> valueClass) {
+            final Conversion last = lastConversion;
+            if (last != null && last.valueClass == valueClass) {
+                return last.converter;
+            }
+            final ValueConverter converter = compact
+                    ? ValueConverter.ofCompact(type, valueClass)
+                    : ValueConverter.of(type, valueClass);
+            this.lastConversion = new Conversion(valueClass, converter);
+            return converter;
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - A converter resolved for a value class
+     */
+    private static final class Conversion {
+
+        @NotNull
+        private final Class<?> valueClass;
+
+        @NotNull
+        private final ValueConverter converter;
+
+        private Conversion(@NotNull Class<?> valueClass, @NotNull ValueConverter converter) {
+            this.valueClass = valueClass;
+            this.converter = converter;
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - A node in the tree of field keys, split by their route separator
+     */
+    static final class KeyNode {
+
+        private static final char SEPARATOR = '.';
+
+        @NotNull
+        private final Map<String, KeyNode> children = new LinkedHashMap<>();
+
+        @Nullable
+        private FieldModel field;
+
+        private void add(@NotNull FieldModel field) {
+            KeyNode node = this;
+            int start = 0;
+            final String key = field.getKey();
+            for (int end = key.indexOf(SEPARATOR); end != -1; end = key.indexOf(SEPARATOR, start)) {
+                node = node.children.computeIfAbsent(key.substring(start, end), name -> new KeyNode());
+                start = end + 1;
+            }
+            node = node.children.computeIfAbsent(key.substring(start), name -> new KeyNode());
+            node.field = field;
+        }
+
+        /**
+         * Get the child nodes of this node, by their key segment
+         *
+         * @return The child nodes
+         */
+        @NotNull
+        Map<String, KeyNode> getChildren() {
+            return children;
+        }
+
+        /**
+         * Get the field mapped to the key ending at this node
+         *
+         * @return The field, or {@code null} if no key ends at this node
+         */
+        @Nullable
+        FieldModel getField() {
+            return field;
+        }
+
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <b>Internal</b> - A reflection-free codec for a {@link YamlFile}-annotated class, generated at compile time by
+ * {@code annotaml-processor}
+ * <p>
+ * Codecs are named after the class they represent, suffixed with {@code _YamlCodec} (e.g. {@code Config_YamlCodec},
+ * or {@code Outer_Inner_YamlCodec} for nested classes), and are placed in the same package. When a codec is present,
+ * it is used in place of reflection to read and write the fields of the class.
+ * <p>
+ * Mapped fields are addressed by their index, in declaration order.
+ *
+ * @param <T> The type of object this codec represents
+ */
+@ApiStatus.Internal
+public interface YamlCodec<T> {
+
+    /**
+     * The suffix appended to the name of a class to get the name of its generated codec
+     */
+    String SUFFIX = "_YamlCodec";
+
+    /**
+     * Get the class this codec represents
+     *
+     * @return The class this codec represents
+     */
+    @NotNull
+    Class<T> getObjectClass();
+
+    /**
+     * Get the header of the file, as declared by {@link YamlFile#header()}
+     *
+     * @return The header of the file
+     */
+    @NotNull
+    String getHeader();
+
+    /**
+     * Get whether the file is a rooted map, as declared by {@link YamlFile#rootedMap()}
+     *
+     * @return If the file is a rooted map
+     */
+    boolean isRootedMap();
+
+    /**
+     * Get the names of the mapped fields
+     *
+     * @return The names of the mapped fields
+     */
+    @NotNull
+    String[] getFieldNames();
+
+    /**
+     * Get the keys of the mapped fields
+     *
+     * @return The keys of the mapped fields
+     */
+    @NotNull
+    String[] getKeys();
+
+    /**
+     * Get the {@link YamlComment} of the mapped fields
+     *
+     * @return The comments of the mapped fields, with {@code null} entries for fields without one
+     */
+    @NotNull
+    String[] getComments();
+
+    /**
+     * Get the types of the mapped fields
+     *
+     * @return The types of the mapped fields
+     */
+    @NotNull
+    Class<?>[] getFieldTypes();
+
+    /**
+     * Get whether each mapped field is annotated with {@link YamlCompact}
+     *
+     * @return Whether each mapped field is compact
+     */
+    boolean @NotNull [] getCompactFields();
+
+    /**
+     * Instantiate a new object of the class using its zero-argument constructor
+     *
+     * @return A new instance of the class
+     */
+    @NotNull
+    T instantiate();
+
+    /**
+     * Get the value of a mapped field
+     *
+     * @param object The object to read the field from
+     * @param field  The index of the field
+     * @return The value of the field
+     */
+    @Nullable
+    Object get(@NotNull T object, int field);
+
+    /**
+     * Set the value of a mapped field
+     *
+     * @param object The object to set the field of
+     * @param field  The index of the field
+     * @param value  The value to set the field to
+     * @throws ClassCastException If the value is not of the field type
+     */
+    void set(@NotNull T object, int field, @Nullable Object value) throws ClassCastException;
+
+    /**
+     * Set the value of a mapped {@code int} field without boxing it
+     * <p>
+     * Generated codecs override this for their {@code int} fields; by default, the value is boxed and passed to
+     * {@link #set(Object, int, Object)}.
+     *
+     * @param object The object to set the field of
+     * @param field  The index of the field, which must be of type {@code int}
+     * @param value  The value to set the field to
+     */
+    default void setInt(@NotNull T object, int field, int value) {
+        set(object, field, value);
+    }
+
+    /**
+     * Set the value of a mapped {@code long} field without boxing it
+     * <p>
+     * Generated codecs override this for their {@code long} fields; by default, the value is boxed and passed to
+     * {@link #set(Object, int, Object)}.
+     *
+     * @param object The object to set the field of
+     * @param field  The index of the field, which must be of type {@code long}
+     * @param value  The value to set the field to
+     */
+    default void setLong(@NotNull T object, int field, long value) {
+        set(object, field, value);
+    }
+
+    /**
+     * Set the value of a mapped {@code double} field without boxing it
+     * <p>
+     * Generated codecs override this for their {@code double} fields; by default, the value is boxed and passed to
+     * {@link #set(Object, int, Object)}.
+     *
+     * @param object The object to set the field of
+     * @param field  The index of the field, which must be of type {@code double}
+     * @param value  The value to set the field to
+     */
+    default void setDouble(@NotNull T object, int field, double value) {
+        set(object, field, value);
+    }
+
+    /**
+     * Set the value of a mapped {@code float} field without boxing it
+     * <p>
+     * Generated codecs override this for their {@code float} fields; by default, the value is boxed and passed to
+     * {@link #set(Object, int, Object)}.
+     *
+     * @param object The object to set the field of
+     * @param field  The index of the field, which must be of type {@code float}
+     * @param value  The value to set the field to
+     */
+    default void setFloat(@NotNull T object, int field, float value) {
+        set(object, field, value);
+    }
+
+    /**
+     * Set the value of a mapped {@code boolean} field without boxing it
+     * <p>
+     * Generated codecs override this for their {@code boolean} fields; by default, the value is boxed and passed to
+     * {@link #set(Object, int, Object)}.
+     *
+     * @param object The object to set the field of
+     * @param field  The index of the field, which must be of type {@code boolean}
+     * @param value  The value to set the field to
+     */
+    default void setBoolean(@NotNull T object, int field, boolean value) {
+        set(object, field, value);
+    }
+
+}
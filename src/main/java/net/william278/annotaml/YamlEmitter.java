@@ -0,0 +1,318 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import dev.dejvokep.boostedyaml.block.implementation.Section;
+import dev.dejvokep.boostedyaml.settings.dumper.DumperSettings;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.snakeyaml.engine.v2.api.DumpSettings;
+import org.snakeyaml.engine.v2.api.StreamDataWriter;
+import org.snakeyaml.engine.v2.comments.CommentLine;
+import org.snakeyaml.engine.v2.comments.CommentType;
+import org.snakeyaml.engine.v2.emitter.Emitter;
+import org.snakeyaml.engine.v2.nodes.MappingNode;
+import org.snakeyaml.engine.v2.nodes.Node;
+import org.snakeyaml.engine.v2.nodes.NodeTuple;
+import org.snakeyaml.engine.v2.nodes.SequenceNode;
+import org.snakeyaml.engine.v2.nodes.Tag;
+import org.snakeyaml.engine.v2.representer.StandardRepresenter;
+import org.snakeyaml.engine.v2.serializer.Serializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * <b>Internal</b> - Writes a {@link YamlObjectMap} as YAML, without reading or building a document
+ * <p>
+ * Keys are nested along their dot-separated routes in the order they appear in the map, and map values are written as
+ * nested mappings, as a {@link dev.dejvokep.boostedyaml.YamlDocument} would lay them out. Keys with {@code null} values
+ * are omitted. The output is formatted with the default boosted-yaml dumper settings.
+ */
+@ApiStatus.Internal
+final class YamlEmitter {
+
+    private static final DumpSettings SETTINGS = DumperSettings.DEFAULT.buildEngineSettings();
+
+    private YamlEmitter() {
+    }
+
+    /**
+     * Write a map as a YAML document, with the comments of its model above each key
+     *
+     * @param map    The map to write
+     * @param writer The writer to write the YAML to. It is flushed, but not closed
+     * @throws IOException If the YAML could not be written
+     */
+    static void emit(@NotNull YamlObjectMap<?> map, @NotNull Writer writer) throws IOException {
+        try (DocumentWriter documents = new DocumentWriter(writer)) {
+            documents.write(map);
+        }
+    }
+
+    /**
+     * Build the tree of branches of a map, nesting keys along their routes and attaching the comments of its model
+     *
+     * @param map The map
+     * @return The root branch
+     */
+    @NotNull
+    private static Branch toBranch(@NotNull YamlObjectMap<?> map) {
+        final Map<String, List<String>> commentLines = map.getModel().getCommentLines();
+        final Branch root = new Branch();
+        map.getValues().forEach((key, value) -> {
+            if (value != null) {
+                root.set(key, value, commentLines.get(key));
+            }
+        });
+        return root;
+    }
+
+    /**
+     * <b>Internal</b> - Writes maps as a stream of YAML documents, one at a time, so that only the document being
+     * written is held in memory
+     * <p>
+     * Documents after the first are separated by {@code ---}. Closing the document writer ends the stream and flushes
+     * the underlying writer, but does not close it.
+     */
+    static final class DocumentWriter implements Closeable {
+
+        @NotNull
+        private final Writer writer;
+
+        @NotNull
+        private final Serializer serializer;
+
+        @NotNull
+        private final BranchRepresenter representer = new BranchRepresenter();
+
+        DocumentWriter(@NotNull Writer writer) throws IOException {
+            this.writer = writer;
+            this.serializer = new Serializer(SETTINGS, new Emitter(SETTINGS, new WriterAdapter(writer)));
+            try {
+                serializer.emitStreamStart();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Write a map as the next document of the stream
+         *
+         * @param map The map to write
+         * @throws IOException If the YAML could not be written
+         */
+        void write(@NotNull YamlObjectMap<?> map) throws IOException {
+            try {
+                serializer.serializeDocument(representer.represent(toBranch(map)));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                serializer.emitStreamEnd();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - A mapping of keys to values or nested branches, with the comment lines to write above each key
+     */
+    private static final class Branch {
+
+        @NotNull
+        private final Map<String, Object> values = new LinkedHashMap<>();
+
+        @NotNull
+        private final Map<String, List<String>> comments = new HashMap<>();
+
+        /**
+         * Create a branch from a map or {@link Section}, converting keys to strings and nested maps to branches
+         *
+         * @param value The map or section
+         * @return The branch
+         */
+        @NotNull
+        private static Branch of(@NotNull Object value) {
+            final Map<?, ?> map = value instanceof Section
+                    ? ((Section) value).getStringRouteMappedValues(false)
+                    : (Map<?, ?>) value;
+            final Branch branch = new Branch();
+            map.forEach((key, child) -> branch.values.put(String.valueOf(key), adapt(child)));
+            return branch;
+        }
+
+        @Nullable
+        private static Object adapt(@Nullable Object value) {
+            return value instanceof Map || value instanceof Section ? of(value) : value;
+        }
+
+        /**
+         * Set the value at a dot-separated route, replacing any non-branch values along it with branches
+         *
+         * @param route    The route to set the value at
+         * @param value    The value to set
+         * @param comments The comment lines to write above the last key of the route, if any
+         */
+        private void set(@NotNull String route, @NotNull Object value, @Nullable List<String> comments) {
+            Branch parent = this;
+            int start = 0;
+            for (int dot = route.indexOf('.'); dot != -1; dot = route.indexOf('.', start)) {
+                final String key = route.substring(start, dot);
+                final Object child = parent.values.get(key);
+                if (child instanceof Branch) {
+                    parent = (Branch) child;
+                } else {
+                    final Branch branch = new Branch();
+                    parent.values.put(key, branch);
+                    parent = branch;
+                }
+                start = dot + 1;
+            }
+
+            final String key = route.substring(start);
+            parent.values.put(key, adapt(value));
+            if (comments != null) {
+                parent.comments.put(key, comments);
+            }
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - Represents branches as block mappings with commented keys, enums by their name, and primitive
+     * number arrays without boxing their elements
+     */
+    private static final class BranchRepresenter extends StandardRepresenter {
+
+        private BranchRepresenter() {
+            super(SETTINGS);
+            this.representers.put(Branch.class, data -> representBranch((Branch) data));
+            this.parentClassRepresenters.put(Section.class, data -> representMapping(Tag.MAP,
+                    ((Section) data).getStringRouteMappedValues(false), SETTINGS.getDefaultFlowStyle()));
+            this.parentClassRepresenters.put(Enum.class, data -> representData(((Enum<?>) data).name()));
+            this.representers.put(int[].class, data -> {
+                final int[] array = (int[]) data;
+                final List<Node> nodes = new ArrayList<>(array.length);
+                for (final int value : array) {
+                    nodes.add(representScalar(Tag.INT, Integer.toString(value)));
+                }
+                return new SequenceNode(Tag.SEQ, nodes, SETTINGS.getDefaultFlowStyle());
+            });
+            this.representers.put(long[].class, data -> {
+                final long[] array = (long[]) data;
+                final List<Node> nodes = new ArrayList<>(array.length);
+                for (final long value : array) {
+                    nodes.add(representScalar(Tag.INT, Long.toString(value)));
+                }
+                return new SequenceNode(Tag.SEQ, nodes, SETTINGS.getDefaultFlowStyle());
+            });
+            this.representers.put(double[].class, data -> {
+                final double[] array = (double[]) data;
+                final List<Node> nodes = new ArrayList<>(array.length);
+                for (final double value : array) {
+                    nodes.add(representScalar(Tag.FLOAT, formatFloat(value)));
+                }
+                return new SequenceNode(Tag.SEQ, nodes, SETTINGS.getDefaultFlowStyle());
+            });
+        }
+
+        /**
+         * Format a floating point number as the engine does, with YAML names for infinities and NaN
+         *
+         * @param value The number to format
+         * @return The formatted number
+         */
+        @NotNull
+        private static String formatFloat(double value) {
+            if (Double.isNaN(value)) {
+                return ".nan";
+            } else if (value == Double.POSITIVE_INFINITY) {
+                return ".inf";
+            } else if (value == Double.NEGATIVE_INFINITY) {
+                return "-.inf";
+            }
+            return Double.toString(value);
+        }
+
+        @NotNull
+        private Node representBranch(@NotNull Branch branch) {
+            final List<NodeTuple> tuples = new ArrayList<>(branch.values.size());
+            branch.values.forEach((key, value) -> {
+                final Node keyNode = representData(key);
+                final List<String> comments = branch.comments.get(key);
+                if (comments != null) {
+                    final List<CommentLine> lines = new ArrayList<>(comments.size());
+                    comments.forEach(line -> lines.add(new CommentLine(
+                            Optional.empty(), Optional.empty(), line, CommentType.BLOCK
+                    )));
+                    keyNode.setBlockComments(lines);
+                }
+                tuples.add(new NodeTuple(keyNode, representData(value)));
+            });
+            return new MappingNode(Tag.MAP, tuples, SETTINGS.getDefaultFlowStyle());
+        }
+
+    }
+
+    /**
+     * <b>Internal</b> - Adapts a {@link Writer} to the emitter, rethrowing write failures unchecked
+     */
+    private static final class WriterAdapter implements StreamDataWriter {
+
+        @NotNull
+        private final Writer writer;
+
+        private WriterAdapter(@NotNull Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(@NotNull String str) {
+            try {
+                writer.write(str);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(@NotNull String str, int off, int len) {
+            try {
+                writer.write(str, off, len);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,537 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.snakeyaml.engine.v2.api.LoadSettings;
+import org.snakeyaml.engine.v2.api.lowlevel.Parse;
+import org.snakeyaml.engine.v2.common.Anchor;
+import org.snakeyaml.engine.v2.events.*;
+import org.snakeyaml.engine.v2.exceptions.YamlEngineException;
+import org.snakeyaml.engine.v2.nodes.Tag;
+import org.snakeyaml.engine.v2.resolver.ScalarResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * <b>Internal</b> - Reads the values of mapped keys from a stream of YAML parser events, without building a document
+ * tree
+ * <p>
+ * The values of keys that are not mapped to a field are skipped without being materialized, unless they are anchored,
+ * in which case they are kept so that later aliases can refer to them. Mappings are read as {@link LinkedHashMap}s
+ * with {@link String} keys, and sequences as {@link ArrayList}s.
+ */
+@ApiStatus.Internal
+final class YamlEventReader {
+
+    private static final LoadSettings SETTINGS = LoadSettings.builder().build();
+
+    @NotNull
+    private final Iterator<Event> events;
+
+    @NotNull
+    private final ScalarResolver resolver;
+
+    @NotNull
+    private final Map<String, Object> anchors = new HashMap<>();
+
+    @Nullable
+    private Event peeked;
+
+    private YamlEventReader(@NotNull Iterable<Event> events) {
+        this.events = events.iterator();
+        this.resolver = SETTINGS.getScalarResolver();
+    }
+
+    /**
+     * Create a reader over a stream of YAML
+     *
+     * @param yaml The YAML to read
+     * @return The reader
+     */
+    @NotNull
+    static YamlEventReader of(@NotNull InputStream yaml) {
+        return new YamlEventReader(new Parse(SETTINGS).parseInputStream(yaml));
+    }
+
+    /**
+     * Create a reader over a stream of YAML characters
+     *
+     * @param yaml The YAML to read
+     * @return The reader
+     */
+    @NotNull
+    static YamlEventReader of(@NotNull Reader yaml) {
+        return new YamlEventReader(new Parse(SETTINGS).parseReader(yaml));
+    }
+
+    /**
+     * Read the next document of the stream into a map
+     * <p>
+     * For rooted maps, every root entry is read. Otherwise, the value of each key in the key tree is read; keys that
+     * are absent from the document are set to {@code null}.
+     *
+     * @param map The map to read the document into
+     * @return {@code false} if there are no more documents in the stream
+     * @throws IOException If the YAML is malformed, or its root is not a mapping
+     */
+    boolean readDocument(@NotNull YamlObjectMap<?> map) throws IOException {
+        try {
+            Event event = next();
+            if (event.getEventId() == Event.ID.StreamStart) {
+                event = next();
+            }
+            if (event.getEventId() == Event.ID.StreamEnd) {
+                return false;
+            }
+            expect(event, Event.ID.DocumentStart);
+            anchors.clear();
+
+            final YamlClassModel<?> model = map.getModel();
+            if (model.isRootedMap()) {
+                map.clear();
+            } else {
+                map.replaceAll((key, value) -> null);
+            }
+
+            // Read the root node, which must be a mapping (or empty)
+            final Event root = next();
+            if (root.getEventId() == Event.ID.MappingStart) {
+                if (model.isRootedMap()) {
+                    rememberAnchor(root, map);
+                    readAll(map);
+                } else if (isAnchored(root)) {
+                    readMapped(map, model.getKeyTree(), (Map<?, ?>) materialize(root));
+                } else {
+                    readMapped(map, model.getKeyTree());
+                }
+            } else if (!(root.getEventId() == Event.ID.Scalar && construct((ScalarEvent) root) == null)) {
+                throw new IOException("The root of the YAML document must be a mapping");
+            }
+            expect(next(), Event.ID.DocumentEnd);
+            return true;
+        } catch (YamlEngineException e) {
+            throw new IOException("Failed to parse YAML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the next document of the stream, whose root must be a mapping or empty, into a map of all of its entries
+     *
+     * @return The entries of the document
+     * @throws IOException If the YAML is malformed, or its root is not a mapping
+     */
+    @NotNull
+    Map<String, Object> readMapping() throws IOException {
+        try {
+            Event event = next();
+            if (event.getEventId() == Event.ID.StreamStart) {
+                event = next();
+            }
+            expect(event, Event.ID.DocumentStart);
+            anchors.clear();
+
+            final Map<String, Object> map = new LinkedHashMap<>();
+            final Event root = next();
+            if (root.getEventId() == Event.ID.MappingStart) {
+                rememberAnchor(root, map);
+                readAll(map);
+            } else if (!(root.getEventId() == Event.ID.Scalar && construct((ScalarEvent) root) == null)) {
+                throw new IOException("The root of the YAML document must be a mapping");
+            }
+            expect(next(), Event.ID.DocumentEnd);
+            return map;
+        } catch (YamlEngineException e) {
+            throw new IOException("Failed to parse YAML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read a mapping key from its YAML text, as it would be read from a document
+     * <p>
+     * Plain keys that resolve to strings are returned as they are; other keys, such as quoted keys or numbers, are
+     * parsed.
+     *
+     * @param key The YAML text of the key
+     * @return The key
+     * @throws IOException If the key is malformed
+     */
+    @NotNull
+    static String readKey(@NotNull String key) throws IOException {
+        if (!key.isEmpty() && key.charAt(0) != '"' && key.charAt(0) != '\''
+                && SETTINGS.getScalarResolver().resolve(key, true).equals(Tag.STR)) {
+            return key;
+        }
+        final Map<String, Object> mapping = of(new StringReader(key + ":")).readMapping();
+        if (mapping.size() != 1) {
+            throw new IOException("Invalid mapping key " + key);
+        }
+        return mapping.keySet().iterator().next();
+    }
+
+    /**
+     * Read every entry of the mapping being read into a map
+     *
+     * @param map The map to read into
+     */
+    private void readAll(@NotNull Map<String, Object> map) {
+        while (peek().getEventId() != Event.ID.MappingEnd) {
+            final String key = String.valueOf(materialize(next()));
+            map.put(key, materialize(next()));
+        }
+        next();
+    }
+
+    /**
+     * Read the entries of the mapping being read whose keys are in the key tree, skipping the rest
+     *
+     * @param map  The map to read mapped values into
+     * @param node The node of the key tree corresponding to the mapping being read
+     */
+    private void readMapped(@NotNull Map<String, Object> map, @NotNull YamlClassModel.KeyNode node) {
+        while (peek().getEventId() != Event.ID.MappingEnd) {
+            final Event keyEvent = next();
+            final boolean scalarKey = keyEvent.getEventId() == Event.ID.Scalar || keyEvent.getEventId() == Event.ID.Alias;
+            final YamlClassModel.KeyNode child = scalarKey
+                    ? node.getChildren().get(String.valueOf(materialize(keyEvent)))
+                    : null;
+            if (child == null) {
+                if (!scalarKey) {
+                    skip(keyEvent);
+                }
+                skip(next());
+                continue;
+            }
+
+            // Read the value of a mapped key, or descend into a mapping of nested keys
+            final Event valueEvent = next();
+            if (child.getField() != null) {
+                final Object value = readValue(child.getField(), valueEvent);
+                map.put(child.getField().getKey(), value);
+                if (!child.getChildren().isEmpty() && value instanceof Map) {
+                    readMapped(map, child, (Map<?, ?>) value);
+                }
+            } else if (valueEvent.getEventId() == Event.ID.MappingStart && isAnchored(valueEvent)) {
+                readMapped(map, child, (Map<?, ?>) materialize(valueEvent));
+            } else if (valueEvent.getEventId() == Event.ID.MappingStart) {
+                readMapped(map, child);
+            } else {
+                skip(valueEvent);
+            }
+        }
+        next();
+    }
+
+    /**
+     * Read the value of a mapped field, reading sequences of numbers for {@code int[]}, {@code long[]} and
+     * {@code double[]} fields straight into a primitive array
+     *
+     * @param field The field the value is mapped to
+     * @param event The first event of the value
+     * @return The value
+     */
+    @Nullable
+    private Object readValue(@NotNull YamlClassModel.FieldModel field, @NotNull Event event) {
+        final Class<?> type = field.getType();
+        if (event.getEventId() == Event.ID.SequenceStart && !isAnchored(event)
+                && (type == int[].class || type == long[].class || type == double[].class)) {
+            return readPrimitiveArray(type);
+        }
+        return materialize(event);
+    }
+
+    /**
+     * Read the sequence being read into a primitive array, without boxing its elements
+     * <p>
+     * If an element is not a plain number, or does not fit an {@code int} when reading an {@code int[]}, the sequence
+     * is read into a list instead, so that it can be converted or rejected like any other value.
+     *
+     * @param type The primitive array type to read
+     * @return The array, or a list if the sequence is not all numbers
+     */
+    @NotNull
+    private Object readPrimitiveArray(@NotNull Class<?> type) {
+        final boolean floating = type == double[].class;
+        long[] longs = new long[floating ? 0 : 16];
+        double[] doubles = new double[floating ? 16 : 0];
+        int size = 0;
+        while (peek().getEventId() != Event.ID.SequenceEnd) {
+            final Event event = next();
+            final String tag = event.getEventId() == Event.ID.Scalar && !isAnchored(event)
+                    ? resolveTag((ScalarEvent) event) : null;
+            try {
+                if (Tag.INT.getValue().equals(tag) || (floating && Tag.FLOAT.getValue().equals(tag))) {
+                    final String value = ((ScalarEvent) event).getValue();
+                    // Parse before storing, so that an element that fails to parse is not counted
+                    if (floating) {
+                        final double parsed = tag.equals(Tag.INT.getValue()) ? Long.parseLong(value) : parseFloat(value);
+                        if (size == doubles.length) {
+                            doubles = Arrays.copyOf(doubles, size * 2);
+                        }
+                        doubles[size++] = parsed;
+                    } else {
+                        final long parsed = Long.parseLong(value);
+                        if (size == longs.length) {
+                            longs = Arrays.copyOf(longs, size * 2);
+                        }
+                        longs[size++] = parsed;
+                    }
+                    continue;
+                }
+            } catch (NumberFormatException e) {
+                // Not a plain number; fall back to a list below
+            }
+
+            // Fall back to reading the rest of the sequence as a list
+            final List<Object> list = new ArrayList<>(size + 16);
+            for (int i = 0; i < size; i++) {
+                list.add(floating ? (Object) doubles[i] : (Object) longs[i]);
+            }
+            list.add(materialize(event));
+            while (peek().getEventId() != Event.ID.SequenceEnd) {
+                list.add(materialize(next()));
+            }
+            next();
+            return list;
+        }
+        next();
+
+        if (floating) {
+            return Arrays.copyOf(doubles, size);
+        } else if (type == long[].class) {
+            return Arrays.copyOf(longs, size);
+        }
+        final int[] ints = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (longs[i] != (int) longs[i]) {
+                // Out of range for an int; return the boxed values, so that they are rejected rather than truncated
+                final List<Object> list = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    list.add(longs[j]);
+                }
+                return list;
+            }
+            ints[i] = (int) longs[i];
+        }
+        return ints;
+    }
+
+    /**
+     * Read the values of nested keys from an already materialized mapping
+     *
+     * @param map    The map to read mapped values into
+     * @param node   The node of the key tree corresponding to the mapping
+     * @param values The materialized mapping
+     */
+    private void readMapped(@NotNull Map<String, Object> map, @NotNull YamlClassModel.KeyNode node,
+                            @NotNull Map<?, ?> values) {
+        node.getChildren().forEach((key, child) -> {
+            final Object value = values.get(key);
+            if (child.getField() != null) {
+                map.put(child.getField().getKey(), value);
+            }
+            if (!child.getChildren().isEmpty() && value instanceof Map) {
+                readMapped(map, child, (Map<?, ?>) value);
+            }
+        });
+    }
+
+    /**
+     * Skip over a node, materializing only anchored content within it
+     *
+     * @param event The first event of the node
+     */
+    private void skip(@NotNull Event event) {
+        if (isAnchored(event)) {
+            materialize(event);
+            return;
+        }
+        final Event.ID end = event.getEventId() == Event.ID.MappingStart ? Event.ID.MappingEnd
+                : event.getEventId() == Event.ID.SequenceStart ? Event.ID.SequenceEnd : null;
+        if (end != null) {
+            while (peek().getEventId() != end) {
+                skip(next());
+            }
+            next();
+        }
+    }
+
+    /**
+     * Read a node into its value
+     *
+     * @param event The first event of the node
+     * @return The value of the node
+     */
+    @Nullable
+    private Object materialize(@NotNull Event event) {
+        switch (event.getEventId()) {
+            case Scalar: {
+                final Object value = construct((ScalarEvent) event);
+                rememberAnchor(event, value);
+                return value;
+            }
+            case Alias: {
+                final String anchor = ((AliasEvent) event).getAlias().getValue();
+                if (!anchors.containsKey(anchor)) {
+                    throw new YamlEngineException("Found undefined alias " + anchor);
+                }
+                return anchors.get(anchor);
+            }
+            case SequenceStart: {
+                final List<Object> list = new ArrayList<>();
+                rememberAnchor(event, list);
+                while (peek().getEventId() != Event.ID.SequenceEnd) {
+                    list.add(materialize(next()));
+                }
+                next();
+                return list;
+            }
+            case MappingStart: {
+                final Map<String, Object> map = new LinkedHashMap<>();
+                rememberAnchor(event, map);
+                readAll(map);
+                return map;
+            }
+            default:
+                throw new YamlEngineException("Unexpected event " + event.getEventId());
+        }
+    }
+
+    /**
+     * Construct the value of a scalar, resolving its type from its tag, or its content if it has no explicit tag
+     *
+     * @param event The scalar event
+     * @return The value of the scalar
+     */
+    @Nullable
+    private Object construct(@NotNull ScalarEvent event) {
+        final String value = event.getValue();
+        final String tag = resolveTag(event);
+        if (tag.equals(Tag.NULL.getValue())) {
+            return null;
+        } else if (tag.equals(Tag.BOOL.getValue())) {
+            return Boolean.valueOf(value.toLowerCase(Locale.ROOT));
+        } else if (tag.equals(Tag.INT.getValue())) {
+            return constructInt(value);
+        } else if (tag.equals(Tag.FLOAT.getValue())) {
+            return constructFloat(value);
+        } else if (tag.equals(Tag.BINARY.getValue())) {
+            return Base64.getMimeDecoder().decode(value);
+        }
+        return value;
+    }
+
+    /**
+     * Resolve the tag of a scalar, from its explicit tag or otherwise its content
+     *
+     * @param event The scalar event
+     * @return The tag of the scalar
+     */
+    @NotNull
+    private String resolveTag(@NotNull ScalarEvent event) {
+        return event.getTag().filter(tag -> !tag.equals("!")).orElseGet(() -> resolver
+                .resolve(event.getValue(), event.getImplicit().canOmitTagInPlainScalar()).getValue());
+    }
+
+    @NotNull
+    private static Number constructInt(@NotNull String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e2) {
+                return new BigInteger(value);
+            }
+        }
+    }
+
+    @NotNull
+    private static Double constructFloat(@NotNull String value) {
+        return parseFloat(value);
+    }
+
+    private static double parseFloat(@NotNull String value) {
+        switch (value) {
+            case ".inf":
+            case ".Inf":
+            case ".INF":
+            case "+.inf":
+            case "+.Inf":
+            case "+.INF":
+                return Double.POSITIVE_INFINITY;
+            case "-.inf":
+            case "-.Inf":
+            case "-.INF":
+                return Double.NEGATIVE_INFINITY;
+            case ".nan":
+            case ".NaN":
+            case ".NAN":
+                return Double.NaN;
+            default:
+                return Double.parseDouble(value);
+        }
+    }
+
+    private static boolean isAnchored(@NotNull Event event) {
+        return event instanceof NodeEvent && ((NodeEvent) event).getAnchor().isPresent();
+    }
+
+    private void rememberAnchor(@NotNull Event event, @Nullable Object value) {
+        if (event instanceof NodeEvent) {
+            ((NodeEvent) event).getAnchor().map(Anchor::getValue).ifPresent(anchor -> anchors.put(anchor, value));
+        }
+    }
+
+    private static void expect(@NotNull Event event, @NotNull Event.ID id) {
+        if (event.getEventId() != id) {
+            throw new YamlEngineException("Expected " + id + " but found " + event.getEventId());
+        }
+    }
+
+    @NotNull
+    private Event peek() {
+        if (peeked == null) {
+            peeked = next();
+        }
+        return peeked;
+    }
+
+    @NotNull
+    private Event next() {
+        if (peeked != null) {
+            final Event event = peeked;
+            peeked = null;
+            return event;
+        }
+        if (!events.hasNext()) {
+            throw new YamlEngineException("Unexpected end of stream");
+        }
+        return events.next();
+    }
+
+}
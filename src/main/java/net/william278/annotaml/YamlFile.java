@@ -49,6 +49,93 @@ public @interface YamlFile {
      */
     boolean rootedMap() default false;
 
+    /**
+     * Indicates if this file should be read by streaming through the YAML, rather than parsing it into a document tree
+     * <p>
+     * Only the values of mapped keys are read; the content of other keys is skipped without being materialized, which
+     * is faster and uses less memory for large files where most of the content is not mapped. Nested maps are read as
+     * plain {@link java.util.Map}s.
+     * <p>
+     * Default: {@code false}
+     *
+     * @return If this file should be read by streaming
+     */
+    boolean streamed() default false;
+
+    /**
+     * Indicates if saved files should be synced to the storage device before they are moved into place
+     * <p>
+     * Files are always written to a temporary file and atomically moved over the target, so an interrupted save never
+     * leaves a truncated file behind. Syncing additionally guarantees the new contents survive a power loss, at the
+     * cost of slower saves.
+     * <p>
+     * Default: {@code false}
+     *
+     * @return If saved files should be synced to disk
+     */
+    boolean fsync() default false;
+
+    /**
+     * Indicates if the object read from the file should be cached, so that {@link Annotaml#get()} returns the same
+     * instance until the file is reloaded
+     * <p>
+     * The cached instance is shared between every caller, so it must not be modified unless the class is also declared
+     * {@link #mutable()}.
+     * <p>
+     * Default: {@code false}
+     *
+     * @return If the read object should be cached
+     */
+    boolean cached() default false;
+
+    /**
+     * Indicates if objects of this class may be modified by the code that gets them. For {@link #cached()} classes,
+     * {@link Annotaml#get()} then returns a deep copy of the cached instance instead of the instance itself, in which
+     * collections, maps, arrays and sections are copied too
+     * <p>
+     * Default: {@code false}
+     *
+     * @return If objects of this class may be modified
+     */
+    boolean mutable() default false;
+
+    /**
+     * Indicates if the values read from the file should be kept in a binary snapshot, so that later loads of the file
+     * can skip parsing it while it is unchanged
+     * <p>
+     * Snapshots are stored in a hidden file next to the YAML file, or in the directory set by
+     * {@link Annotaml#setSnapshotDirectory(java.nio.file.Path)}. A snapshot is only used if the size, modification time
+     * and contents of the file, and the keys of the class, are the same as when it was written.
+     * <p>
+     * Default: {@code false}
+     *
+     * @return If the values read from the file should be kept in a binary snapshot
+     */
+    boolean binaryCache() default false;
+
+    /**
+     * Indicates if a {@link #rootedMap()} file should be read lazily, so that only the values that are got are parsed
+     * <p>
+     * Reading the file then only indexes the offset of each top-level key, and each value is parsed from the file when
+     * it is got from the map. The map is read-only. Files that are not plain block mappings, or in which entries refer
+     * to anchors in other entries, should not be read lazily; the former are read in full instead.
+     * <p>
+     * Default: {@code false}
+     *
+     * @return If the rooted map should be read lazily
+     */
+    boolean lazy() default false;
+
+    /**
+     * The number of parsed values of a {@link #lazy()} rooted map to cache, so that values got again are not parsed
+     * again. If set to {@code 0}, values are parsed every time they are got
+     * <p>
+     * Default: {@code 0}
+     *
+     * @return The number of parsed values to cache
+     */
+    int lazyCacheSize() default 0;
+
     /**
      * The field to use as a key for the version of the file
      * <p>
@@ -21,20 +21,22 @@ package net.william278.annotaml;
 
 import dev.dejvokep.boostedyaml.YamlDocument;
 import dev.dejvokep.boostedyaml.block.implementation.Section;
-import dev.dejvokep.boostedyaml.utils.conversion.PrimitiveConversions;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.lang.reflect.Field;
+import java.io.*;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-
-import static dev.dejvokep.boostedyaml.utils.conversion.PrimitiveConversions.*;
 
 /**
  * Represents a {@link T} object as a mapped set of paths to their object values, as read to/from a {@link YamlFile}
@@ -45,13 +47,48 @@ import static dev.dejvokep.boostedyaml.utils.conversion.PrimitiveConversions.*;
 public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
 
     /**
-     * <b>Internal</b> - The object this YamlObjectMap instance is representing
+     * <b>Internal</b> - The model of the object class this YamlObjectMap instance is representing
      */
     @NotNull
-    private final Class<T> objectClass;
+    private final YamlClassModel<T> model;
 
-    @NotNull
-    private final Map<String, String> comments;
+    /**
+     * <b>Internal</b> - The object materialized from this map, if the object class is {@link YamlFile#cached() cached}
+     */
+    @Nullable
+    private volatile T snapshot;
+
+    /**
+     * <b>Internal</b> - The values of a {@link YamlFile#lazy() lazy} rooted map, if it was read lazily, in which case
+     * this map is empty
+     */
+    @Nullable
+    private LazyRootedMap lazyMap;
+
+    /**
+     * <b>Internal</b> - The values of a {@link YamlCompact compact} rooted map, if it was read from YAML, in which case
+     * this map is empty
+     */
+    @Nullable
+    private CompactMap<Object> compactMap;
+
+    /**
+     * <b>Internal</b> - The file this map was read from, if known, which phases are recorded against
+     */
+    @Nullable
+    private Path source;
+
+    /**
+     * <b>Internal</b> - The size in bytes of the YAML this map was parsed from, or {@code -1} if not known
+     */
+    private long sourceBytes = -1;
+
+    /**
+     * <b>Internal</b> - The modification time of the file this map was read from, as it was before it was read, if
+     * known
+     */
+    @Nullable
+    private FileTime sourceModified;
 
     /**
      * Create a new YamlObjectMap from an object
@@ -64,14 +101,8 @@ public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
     protected YamlObjectMap(@NotNull T object) throws IllegalArgumentException {
         super();
 
-        // Validate that the @YamlFile annotation is present
-        if (!object.getClass().isAnnotationPresent(YamlFile.class)) {
-            throw new IllegalArgumentException("Object type must be annotated with @YamlFile");
-        }
-
         // Read the object to the map
-        this.objectClass = (Class<T>) object.getClass();
-        this.comments = new LinkedHashMap<>();
+        this.model = YamlClassModel.of((Class<T>) object.getClass());
         this.readDefaults(object);
     }
 
@@ -88,59 +119,171 @@ public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
     @ApiStatus.Internal
     protected static <T> YamlObjectMap<T> parse(@NotNull T defaults, @NotNull InputStream yaml) throws
             IllegalArgumentException, IOException {
-        return new YamlObjectMap<>(defaults).readFromYaml(YamlDocument.create(yaml));
+        final YamlObjectMap<T> map = new YamlObjectMap<>(defaults);
+        final Object event = FlightRecording.beginLoad();
+        final long start = Metrics.start();
+        if (map.model.isStreamed()) {
+            YamlEventReader.of(yaml).readDocument(map);
+            map.compactValues();
+            Metrics.record(AnnotamlMetrics.Phase.PARSE, map.getObjectClass(), null, start, -1, map.getValues().size());
+        } else {
+            final YamlDocument document = YamlDocument.create(yaml);
+            Metrics.record(AnnotamlMetrics.Phase.PARSE, map.getObjectClass(), null, start, -1, -1);
+            map.readFromYaml(document);
+        }
+        FlightRecording.commitLoad(event, map.getObjectClass(), null, -1, map.getValues().size());
+        return map;
     }
 
     /**
-     * Read the map of field default paths to values from the object to this map
+     * Parse a {@link YamlObjectMap} of a {@link T object} from a buffer of UTF-8 encoded YAML
      *
-     * @param object the object to read from
+     * @param defaults Default values to use if the YAML does not contain a value for a key
+     * @param yaml     The buffer of YAML to parse, such as one read by {@link FileInput#read(java.nio.file.Path)}
+     * @param file     The file the YAML was read from, if any
+     * @param <T>      The type of the object to parse
+     * @return A {@link YamlObjectMap} of the parsed object
+     * @throws IllegalArgumentException If the object type is not annotated with {@link YamlFile}
+     * @throws IOException              If an error occurs while reading the YAML
      */
-    @SuppressWarnings("unchecked")
-    private void readDefaults(@NotNull T object) throws IllegalArgumentException {
-        // Validate object
-        if (!object.getClass().isAnnotationPresent(YamlFile.class)) {
-            throw new IllegalArgumentException("Object type must be annotated with @YamlFile");
+    @NotNull
+    static <T> YamlObjectMap<T> parse(@NotNull T defaults, @NotNull ByteBuffer yaml, @Nullable Path file) throws
+            IllegalArgumentException, IOException {
+        final YamlObjectMap<T> map = new YamlObjectMap<>(defaults);
+        map.source = file;
+        map.sourceBytes = yaml.remaining();
+        final long bytes = map.sourceBytes;
+        final long start = Metrics.start();
+        if (map.model.isStreamed()) {
+            YamlEventReader.of(FileInput.decode(yaml)).readDocument(map);
+            map.compactValues();
+            Metrics.record(AnnotamlMetrics.Phase.PARSE, map.getObjectClass(), file, start, bytes, map.getValues().size());
+            return map;
         }
+        final YamlDocument document = YamlDocument.create(FileInput.stream(yaml));
+        Metrics.record(AnnotamlMetrics.Phase.PARSE, map.getObjectClass(), file, start, bytes, -1);
+        return map.readFromYaml(document);
+    }
 
-        // Check if this is a rooted map, then begin iterating through the fields
-        final boolean rootedMap = object.getClass().getAnnotation(YamlFile.class).rootedMap();
-        final Field[] fields = object.getClass().getDeclaredFields();
-        int fieldIndex = 0;
-        for (final Field field : fields) {
-            // Ensure the field is accessible
-            field.setAccessible(true);
-
-            // Ignore fields that are annotated with @YamlIgnored
-            if (field.isAnnotationPresent(YamlIgnored.class)) {
-                continue;
-            }
-
-            // If the field is annotated with @YamlKey, use the value as the key
-            final String key = rootedMap ? ""
-                    : field.isAnnotationPresent(YamlKey.class)
-                    ? field.getAnnotation(YamlKey.class).value()
-                    : field.getName();
-
-            // If the field is the first in the object, add the header as a comment
-            if (fieldIndex == 0) {
-                final String headerComment = getObjectClass().getAnnotation(YamlFile.class).header();
-                if (!headerComment.isEmpty()) {
-                    comments.put(key, headerComment);
+    /**
+     * Parse the documents of a stream of {@code ---}-separated YAML documents lazily, reading each document only when
+     * it is iterated to
+     * <p>
+     * Documents are read from the parser's events, as for {@link YamlFile#streamed()} classes, so only the document
+     * being read is held in memory. Failures to read a document are thrown as {@link UncheckedIOException}s.
+     *
+     * @param defaults Default values to use if a document does not contain a value for a key
+     * @param yaml     The YAML to parse
+     * @param <T>      The type of the objects to parse
+     * @return An iterator over a {@link YamlObjectMap} of each document
+     * @throws IllegalArgumentException If the object type is not annotated with {@link YamlFile}
+     */
+    @NotNull
+    static <T> Iterator<YamlObjectMap<T>> parseAll(@NotNull T defaults, @NotNull InputStream yaml) throws
+            IllegalArgumentException {
+        YamlClassModel.of(defaults.getClass());
+        final YamlEventReader reader = YamlEventReader.of(yaml);
+        return new Iterator<>() {
+            @Nullable
+            private YamlObjectMap<T> next;
+            private boolean ended;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !ended) {
+                    final YamlObjectMap<T> map = new YamlObjectMap<>(defaults);
+                    try {
+                        if (reader.readDocument(map)) {
+                            map.compactValues();
+                            next = map;
+                        } else {
+                            ended = true;
+                        }
+                    } catch (IOException e) {
+                        ended = true;
+                        throw new UncheckedIOException(e);
+                    }
                 }
+                return next != null;
             }
 
-            // If the field has a comment annotation, add it to the comments map
-            if (field.isAnnotationPresent(YamlComment.class)) {
-                if (comments.containsKey(key)) {
-                    comments.put(key, comments.get(key) + "\n" + field.getAnnotation(YamlComment.class).value());
-                } else {
-                    comments.put(key, field.getAnnotation(YamlComment.class).value());
+            @Override
+            public YamlObjectMap<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
                 }
+                final YamlObjectMap<T> map = next;
+                next = null;
+                return map;
             }
+        };
+    }
 
+    /**
+     * Read a {@link YamlObjectMap} of a {@link T object} from a YAML file, from its binary snapshot if the class is
+     * declared {@link YamlFile#binaryCache()} and the file is unchanged since the snapshot was written
+     * <p>
+     * {@link YamlFile#lazy() Lazy} rooted maps are only indexed, and their values parsed as they are got.
+     *
+     * @param defaults Default values to use if the YAML does not contain a value for a key
+     * @param file     The file to read
+     * @param <T>      The type of the object to read
+     * @return A {@link YamlObjectMap} of the read object
+     * @throws IllegalArgumentException If the object type is not annotated with {@link YamlFile}
+     * @throws IOException              If the file cannot be read, or an error occurs while parsing the YAML
+     */
+    @NotNull
+    static <T> YamlObjectMap<T> read(@NotNull T defaults, @NotNull Path file) throws IllegalArgumentException,
+            IOException {
+        final Object event = FlightRecording.beginLoad();
+        final YamlObjectMap<T> map = readFile(defaults, file);
+        FlightRecording.commitLoad(event, map.getObjectClass(), file, map.sourceBytes, map.getValues().size());
+        return map;
+    }
+
+    @NotNull
+    private static <T> YamlObjectMap<T> readFile(@NotNull T defaults, @NotNull Path file) throws
+            IllegalArgumentException, IOException {
+        final YamlClassModel<?> model = YamlClassModel.of(defaults.getClass());
+        if (!model.isLazy() && model.isBinaryCache()) {
+            return SnapshotCache.read(defaults, file);
+        }
+
+        // Read the attributes before the contents, so that a change made while reading is seen as a later change
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        final ByteBuffer yaml = model.isLazy() ? FileInput.map(file) : FileInput.read(file);
+        final YamlObjectMap<T> map = model.isLazy() ? readLazy(defaults, yaml, file) : parse(defaults, yaml, file);
+        map.setSource(file, attributes);
+        return map;
+    }
+
+    @NotNull
+    private static <T> YamlObjectMap<T> readLazy(@NotNull T defaults, @NotNull ByteBuffer yaml, @NotNull Path file)
+            throws IllegalArgumentException, IOException {
+        final YamlClassModel<?> model = YamlClassModel.of(defaults.getClass());
+        final long start = Metrics.start();
+        final LazyRootedMap lazyMap = LazyRootedMap.index(file, yaml, model.getLazyCacheSize());
+        if (lazyMap == null) {
+            return parse(defaults, yaml, file);
+        }
+        Metrics.record(AnnotamlMetrics.Phase.PARSE, model.getObjectClass(), file, start, yaml.remaining(),
+                lazyMap.size());
+        final YamlObjectMap<T> map = new YamlObjectMap<>(defaults);
+        map.clear();
+        map.lazyMap = lazyMap;
+        return map;
+    }
+
+    /**
+     * Read the map of field default paths to values from the object to this map
+     *
+     * @param object the object to read from
+     */
+    @SuppressWarnings("unchecked")
+    private void readDefaults(@NotNull T object) throws IllegalArgumentException {
+        for (final YamlClassModel.FieldModel field : model.getFields()) {
             // If it's a rooted map, add the read map values to the root of the map
-            if (rootedMap) {
+            if (model.isRootedMap()) {
                 try {
                     readFieldValue(field, object).ifPresent(value -> this.putAll((Map<String, Object>) value));
                 } catch (IllegalAccessException e) {
@@ -152,13 +295,43 @@ public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
             // Attempt to read the value from the field and add it to the map
             try {
                 final Optional<Object> value = readFieldValue(field, object);
-                this.put(key, value.orElse(null));
+                this.put(field.getKey(), value.orElse(null));
             } catch (IllegalAccessException e) {
                 throw new IllegalArgumentException("Unable to read field " + field.getName() + " from object " +
                         object.getClass().getName() + " to map at YAML path " + field.getName(), e);
             }
+        }
+    }
 
-            fieldIndex++;
+    /**
+     * Replace the values read for {@link YamlCompact compact} fields with the {@link CompactMap}s they are read into,
+     * so that the values are held once, by the compact map shared with each object materialized from this map
+     * <p>
+     * For compact rooted maps, the entries of this map are moved into a compact map, and this map is left empty.
+     */
+    @SuppressWarnings("unchecked")
+    void compactValues() {
+        for (final YamlClassModel.FieldModel field : model.getFields()) {
+            if (!field.isCompact()) {
+                continue;
+            }
+            if (model.isRootedMap()) {
+                if (lazyMap == null && compactMap == null) {
+                    final Object compact = field.getConverter(getClass()).convert(this);
+                    if (compact instanceof CompactMap) {
+                        compactMap = (CompactMap<Object>) compact;
+                        this.clear();
+                    }
+                }
+                return;
+            }
+            final Object value = this.get(field.getKey());
+            if (value != null && !(value instanceof CompactMap)) {
+                final Object compact = field.getConverter(value.getClass()).convert(value);
+                if (compact instanceof CompactMap) {
+                    this.put(field.getKey(), compact);
+                }
+            }
         }
     }
 
@@ -170,21 +343,10 @@ public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
      * @throws IllegalArgumentException If a field could not be accessed and set from the map
      */
     private T applyMapTo(@NotNull T defaults) throws IllegalArgumentException {
-        final boolean rootedMap = defaults.getClass().getAnnotation(YamlFile.class).rootedMap();
-
         // Iterate through each field
-        final Field[] fields = defaults.getClass().getDeclaredFields();
-        for (final Field field : fields) {
-            // Ensure the field is accessible
-            field.setAccessible(true);
-
-            // Ignore fields that are annotated with @YamlIgnored
-            if (field.isAnnotationPresent(YamlIgnored.class)) {
-                continue;
-            }
-
+        for (final YamlClassModel.FieldModel field : model.getFields()) {
             // Handle rooted maps
-            if (rootedMap) {
+            if (model.isRootedMap()) {
                 if (!field.getType().equals(Map.class)) {
                     throw new IllegalArgumentException("Field " + field.getName() + " is part of a rooted map but is not a Map (is "
                             + field.getType().getName() + ")");
@@ -192,7 +354,7 @@ public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
 
                 // Write the rooted map to the field
                 try {
-                    writeFieldValue(field, defaults, this);
+                    writeFieldValue(field, defaults, getValues());
                 } catch (IllegalAccessException e) {
                     throw new IllegalArgumentException("Unable to write rooted field " + field.getName() + " from object " +
                             defaults.getClass().getName() + " to " + field.getName(), e);
@@ -200,10 +362,7 @@ public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
                 return defaults;
             }
 
-            // If the field is annotated with @YamlKey, use the value as the key
-            final String key = field.isAnnotationPresent(YamlKey.class) ?
-                    field.getAnnotation(YamlKey.class).value() : field.getName();
-            Optional.ofNullable(this.get(key)).ifPresent(value -> {
+            Optional.ofNullable(this.get(field.getKey())).ifPresent(value -> {
                 try {
                     writeFieldValue(field, defaults, value);
                 } catch (IllegalAccessException e) {
@@ -217,64 +376,139 @@ public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
     }
 
     /**
-     * Read a field value from an object
+     * Set the fields of an existing {@link T object} mapped to the given keys from the values in this map
+     * <p>
+     * Fields whose keys have no value in this map are reset to their default value. For rooted maps, the map field is
+     * set if any key is given.
      *
-     * @param field  The field to read
-     * @param object The object to read the field from
-     * @param value  The value to set the field to
-     * @throws IllegalAccessException If the field could not be accessed
+     * @param target The object to set the fields of
+     * @param keys   The keys of the fields to set
+     * @return The object with the fields set
+     * @throws IllegalArgumentException     If a field could not be accessed and set from the map
+     * @throws ReflectiveOperationException If a default object could not be instantiated to reset a field
      */
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    private <Y> void writeFieldValue(@NotNull Field field, @NotNull T object, @NotNull Y value)
-            throws IllegalAccessException, IllegalArgumentException {
-        // Set the field to be accessible
-        field.setAccessible(true);
-
-        // Convert the value safely
-        final Class<?> fieldClass = field.getType();
-        Object settableObject = fieldClass.isInstance(value) ? value
-                : PrimitiveConversions.isNumber(value.getClass()) && PrimitiveConversions.isNumber(fieldClass)
-                ? (Y) convertNumber(value, fieldClass)
-                : NON_NUMERIC_CONVERSIONS.containsKey(value.getClass()) && NON_NUMERIC_CONVERSIONS.containsKey(fieldClass)
-                ? value
-                : null;
-
-        // Handle maps
-        if (value instanceof Section) {
-            final Map<String, ?> map = ((Section) value).getStringRouteMappedValues(false);
-            settableObject = map;
-            if (fieldClass == TreeMap.class) {
-                settableObject = new TreeMap<>(map);
-            } else if (fieldClass == LinkedHashMap.class) {
-                settableObject = new LinkedHashMap<>(map);
-            } else if (fieldClass == HashMap.class) {
-                settableObject = new HashMap<>(map);
-            } else if (fieldClass == ConcurrentHashMap.class) {
-                settableObject = new ConcurrentHashMap<>(map);
+    @NotNull
+    T applyKeysTo(@NotNull T target, @NotNull Collection<String> keys) throws IllegalArgumentException,
+            ReflectiveOperationException {
+        if (keys.isEmpty()) {
+            return target;
+        }
+        if (model.isRootedMap()) {
+            return applyMapTo(target);
+        }
+
+        T defaults = null;
+        for (final YamlClassModel.FieldModel field : model.getFields()) {
+            if (!keys.contains(field.getKey())) {
+                continue;
+            }
+            final Object value = this.get(field.getKey());
+            if (value != null) {
+                writeFieldValue(field, target, value);
+                continue;
             }
+            if (defaults == null) {
+                defaults = model.instantiate();
+            }
+            field.getAccessor().set(target, field.getAccessor().get(defaults));
         }
+        return target;
+    }
 
-        // Handle enums
-        if (fieldClass.isEnum()) {
-            try {
-                settableObject = Enum.valueOf((Class<? extends Enum>) fieldClass, value.toString());
-            } catch (IllegalArgumentException e) {
-                // If the config entered enum wasn't found, try to match it
-                for (final Enum<?> enumValue : ((Class<? extends Enum>) fieldClass).getEnumConstants()) {
-                    if (enumValue.name().equalsIgnoreCase(value.toString())) {
-                        settableObject = enumValue;
-                        break;
-                    }
+    /**
+     * Get the keys whose values differ between this map and a previously read map of the same object class
+     * <p>
+     * Values are compared after conversion to the type of their field, and maps and sections are compared by their
+     * entries.
+     * Entries of two lazily read rooted maps are compared by the hashes of their YAML, without parsing them.
+     *
+     * @param previous The previously read map
+     * @return The changed keys, in field order
+     */
+    @NotNull
+    Set<String> getChangedKeys(@NotNull YamlObjectMap<T> previous) {
+        final Set<String> changed = new LinkedHashSet<>();
+        if (model.isRootedMap()) {
+            if (lazyMap != null && previous.lazyMap != null) {
+                return lazyMap.getChangedKeys(previous.lazyMap);
+            }
+            final Map<String, Object> values = getValues();
+            final Map<String, Object> previousValues = previous.getValues();
+            values.forEach((key, value) -> {
+                if (!previousValues.containsKey(key)
+                        || !Objects.equals(normalize(value), normalize(previousValues.get(key)))) {
+                    changed.add(key);
                 }
+            });
+            previousValues.keySet().stream().filter(key -> !values.containsKey(key)).forEach(changed::add);
+            return changed;
+        }
+
+        for (final YamlClassModel.FieldModel field : model.getFields()) {
+            final Object value = convert(field, this.get(field.getKey()));
+            final Object previousValue = convert(field, previous.get(field.getKey()));
+            if (!Objects.equals(value, previousValue)) {
+                changed.add(field.getKey());
             }
         }
+        return changed;
+    }
+
+    @Nullable
+    private static Object convert(@NotNull YamlClassModel.FieldModel field, @Nullable Object value) {
+        if (value == null || YamlClassModel.isSection(field.getType())) {
+            return normalize(value);
+        }
+        final Object converted = field.getConverter(value.getClass()).convert(value);
+        return normalize(converted != null ? converted : value);
+    }
 
-        // Set the field value
-        if (settableObject != null) {
-            field.set(object, settableObject);
-        } else {
+    /**
+     * Normalize a value for comparison, replacing {@link Section}s with maps of their values and converting map keys
+     * to strings, as they are when written. Primitive arrays are wrapped in buffers, which compare by content
+     *
+     * @param value The value to normalize
+     * @return The normalized value
+     */
+    @Nullable
+    private static Object normalize(@Nullable Object value) {
+        if (value instanceof Section) {
+            return normalize(((Section) value).getStringRouteMappedValues(false));
+        }
+        if (value instanceof Map) {
+            final Map<String, Object> map = new HashMap<>();
+            ((Map<?, ?>) value).forEach((key, child) -> map.put(String.valueOf(key), normalize(child)));
+            return map;
+        }
+        if (value instanceof int[]) {
+            return IntBuffer.wrap((int[]) value);
+        } else if (value instanceof long[]) {
+            return LongBuffer.wrap((long[]) value);
+        } else if (value instanceof double[]) {
+            return DoubleBuffer.wrap((double[]) value);
+        }
+        if (value instanceof List) {
+            final List<Object> list = new ArrayList<>(((List<?>) value).size());
+            ((List<?>) value).forEach(child -> list.add(normalize(child)));
+            return list;
+        }
+        return value;
+    }
+
+    /**
+     * Write a value to a field of an object, converting it to the field type
+     *
+     * @param field  The field to write
+     * @param object The object to write the field of
+     * @param value  The value to set the field to
+     * @throws IllegalAccessException   If the field could not be accessed
+     * @throws IllegalArgumentException If the value could not be converted to the field type
+     */
+    private void writeFieldValue(@NotNull YamlClassModel.FieldModel field, @NotNull T object, @NotNull Object value)
+            throws IllegalAccessException, IllegalArgumentException {
+        if (!field.getConverter(value.getClass()).write(field.getAccessor(), object, value)) {
             throw new IllegalArgumentException("Unable to set field " + field.getName() + " of type " +
-                    fieldClass.getName() + " to value " + value);
+                    field.getType().getName() + " to value " + value);
         }
     }
 
@@ -286,17 +520,9 @@ public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
      * @return The value of the field, wrapped within an Optional. If the field is null, the Optional will be empty.
      * @throws IllegalAccessException If the field is inaccessible and could not be read for any reason
      */
-    private Optional<Object> readFieldValue(@NotNull Field field, @NotNull T object) throws IllegalAccessException {
-        // Ensure the field is accessible
-        field.setAccessible(true);
-
-        // If the object is an enum, return the name of the enum
-        if (field.getType().isEnum()) {
-            return Optional.ofNullable(field.get(object)).map(Object::toString);
-        }
-
-        // Otherwise, return the value of the field
-        return Optional.ofNullable(field.get(object));
+    private Optional<Object> readFieldValue(@NotNull YamlClassModel.FieldModel field, @NotNull T object)
+            throws IllegalAccessException {
+        return Optional.ofNullable(field.read(object));
     }
 
     /**
@@ -306,63 +532,82 @@ public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
      */
     @NotNull
     private YamlObjectMap<T> readFromYaml(@NotNull YamlDocument yamlDocument) {
+        final long start = Metrics.start();
+
         // If it's a rooted map, read each value from the root
-        if (getObjectClass().getAnnotation(YamlFile.class).rootedMap()) {
+        if (model.isRootedMap()) {
             this.clear();
             this.putAll(yamlDocument.getStringRouteMappedValues(false));
-            return this;
+        } else {
+            // Otherwise, read each field from the mapped document by its precompiled route
+            for (final YamlClassModel.FieldModel field : model.getFields()) {
+                this.put(field.getKey(), yamlDocument.get(field.getRoute()));
+            }
         }
-
-        // Otherwise, read each field from the mapped document
-        this.forEach((key, value) -> this.put(key, yamlDocument.get(key)));
+        this.compactValues();
+        Metrics.record(AnnotamlMetrics.Phase.READ, model.getObjectClass(), source, start, -1, getValues().size());
         return this;
     }
 
     /**
      * Write the map of field paths to values to disk
+     * <p>
+     * The file is replaced atomically with the new contents. If the file already has the new contents, it is not
+     * written again; it is only read to compare them if it is not known to be unchanged since it was last written, and
+     * has the same size as them.
      *
      * @param file The file to write to
      * @throws IOException If the file could not be written to
      */
     @ApiStatus.Internal
     public void save(@NotNull File file) throws IOException {
-        // Create parent directories
-        if (!file.getParentFile().exists()) {
-            if (!file.getParentFile().mkdirs()) {
-                throw new IOException("Unable to create parent directories for file " + file.getAbsolutePath());
-            }
-        }
+        final Object event = FlightRecording.beginSave();
+        final long start = Metrics.start();
+        this.write(file.toPath(), this.toBytes(), event, start);
+    }
 
-        // Create file
-        if (!file.exists()) {
-            if (!file.createNewFile()) {
-                throw new IOException("Unable to create file " + file.getAbsolutePath());
-            }
-        }
+    /**
+     * Write YAML already serialized from this map with {@link #toBytes()} to disk, as {@link #save(File)} would
+     *
+     * @param file  The file to write to
+     * @param bytes The serialized YAML
+     * @throws IOException If the file could not be written to
+     */
+    void save(@NotNull Path file, byte @NotNull [] bytes) throws IOException {
+        this.write(file, bytes, FlightRecording.beginSave(), Metrics.start());
+    }
 
-        // Create YamlDocument that will be dumped as a file
-        final YamlDocument yamlDocument = YamlDocument.create(file);
-
-        // Set key-values and associated comments if applicable
-        this.forEach((key, value) -> {
-            // Set the value
-            yamlDocument.set(key, value);
-
-            // Set block comments
-            if (comments.containsKey(key)) {
-                yamlDocument.getBlock(key).setComments((Arrays
-                        .stream(comments.get(key).split("\\r?\\n"))
-                        .map(String::trim)
-                        .map(comment -> " " + comment)
-                        .collect(Collectors.toList())));
-            }
-        });
+    private void write(@NotNull Path file, byte @NotNull [] bytes, @Nullable Object event, long start)
+            throws IOException {
+        if (lazyMap != null) {
+            lazyMap.save(file, bytes, model.isFsync());
+        } else {
+            AtomicFileWriter.write(file, bytes, model.isFsync());
+        }
+        Metrics.record(AnnotamlMetrics.Phase.SAVE, model.getObjectClass(), file, start, bytes.length,
+                getValues().size());
+        FlightRecording.commitSave(event, model.getObjectClass(), file, bytes.length, getValues().size());
+    }
 
-        yamlDocument.save();
+    /**
+     * Serialize the map of field paths to values as YAML
+     *
+     * @return The UTF-8 encoded YAML
+     * @throws IOException If the map could not be serialized
+     */
+    byte @NotNull [] toBytes() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            YamlEmitter.emit(this, writer);
+        }
+        return bytes.toByteArray();
     }
 
     /**
      * Get the object represented by the map, by applying the read map to a newly instantiated {@link T object}
+     * <p>
+     * For {@link YamlFile#cached() cached} classes, the object is materialized once and the same instance is returned
+     * on each call, or a deep copy of it for {@link YamlFile#mutable() mutable} classes.
      *
      * @return The {@link T object}
      * @throws InvocationTargetException If the object could not be invoked during instantiation
@@ -372,7 +617,102 @@ public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
     @ApiStatus.Internal
     @NotNull
     protected T getObject() throws InvocationTargetException, InstantiationException, IllegalAccessException {
-        return this.applyMapTo(Annotaml.getDefaults(objectClass));
+        if (!model.isCached()) {
+            return this.materialize();
+        }
+
+        // Materialize the object once, then share it, or copies of it for mutable classes
+        T object = snapshot;
+        if (object == null) {
+            synchronized (this) {
+                object = snapshot;
+                if (object == null) {
+                    object = this.materialize();
+                    snapshot = object;
+                }
+            }
+        }
+        return model.isMutable() ? model.copy(object) : object;
+    }
+
+    /**
+     * Instantiate a new {@link T object} and apply this map to it, recording the time spent applying it
+     *
+     * @return The object
+     * @throws InvocationTargetException If the object could not be invoked during instantiation
+     * @throws InstantiationException    If the object could not be instantiated
+     * @throws IllegalAccessException    If the object could not be instantiated
+     */
+    @NotNull
+    private T materialize() throws InvocationTargetException, InstantiationException, IllegalAccessException {
+        final Object event = FlightRecording.beginReflectInit();
+        final T object = model.instantiate();
+        final long start = Metrics.start();
+        final T applied = this.applyMapTo(object);
+        Metrics.record(AnnotamlMetrics.Phase.APPLY, model.getObjectClass(), source, start, -1, getValues().size());
+        FlightRecording.commitReflectInit(event, model.getObjectClass(), source, getValues().size());
+        return applied;
+    }
+
+    /**
+     * Get the values of this map, or of its lazily read or compact rooted map if it has one
+     *
+     * @return The map of field paths, or rooted map keys, to values
+     */
+    @NotNull
+    Map<String, Object> getValues() {
+        return lazyMap != null ? lazyMap : compactMap != null ? compactMap : this;
+    }
+
+    /**
+     * Set the file this map was read from
+     *
+     * @param file       The file the map was read from
+     * @param attributes The attributes of the file, read before its contents
+     */
+    void setSource(@NotNull Path file, @NotNull BasicFileAttributes attributes) {
+        this.source = file;
+        this.sourceBytes = attributes.size();
+        this.sourceModified = attributes.lastModifiedTime();
+    }
+
+    /**
+     * Get the file this map was read from
+     *
+     * @return The file, or {@code null} if the map was not read from a file
+     */
+    @Nullable
+    Path getSource() {
+        return source;
+    }
+
+    /**
+     * Get the size of the file this map was read from
+     *
+     * @return The size in bytes, or {@code -1} if not known
+     */
+    long getSourceBytes() {
+        return sourceBytes;
+    }
+
+    /**
+     * Get the modification time of the file this map was read from, as it was before it was read
+     *
+     * @return The modification time, or {@code null} if not known
+     */
+    @Nullable
+    FileTime getSourceModified() {
+        return sourceModified;
+    }
+
+    /**
+     * Get the model of the object class represented by this map
+     *
+     * @return The model of the object class
+     */
+    @NotNull
+    YamlClassModel<T> getModel() {
+        return this.model;
     }
 
     /**
@@ -383,7 +723,7 @@ public class YamlObjectMap<T> extends LinkedHashMap<String, Object> {
     @ApiStatus.Internal
     @NotNull
     protected Class<T> getObjectClass() {
-        return this.objectClass;
+        return model.getObjectClass();
     }
 
 }
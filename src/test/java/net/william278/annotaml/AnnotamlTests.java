@@ -19,12 +19,44 @@
 
 package net.william278.annotaml;
 
+import dev.dejvokep.boostedyaml.YamlDocument;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
 
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class AnnotamlTests {
 
@@ -92,4 +124,898 @@ public class AnnotamlTests {
         // Write a file to the temp directory
         Annotaml.create(new TestYamlRootedMapFile()).save(file);
     }
+
+    @Test
+    public void testWriteMatchesDocument() throws IOException {
+        for (final Object object : new Object[]{new TestYamlFile(), new TestYamlRootedMapFile()}) {
+            final YamlObjectMap<?> map = new YamlObjectMap<>(object);
+            final File file = new File(System.getProperty("java.io.tmpdir"), "test_write_matches.yml");
+            map.save(file);
+
+            // Build the same file through a YamlDocument, as saves were previously written
+            final YamlDocument document = YamlDocument.create(new ByteArrayInputStream(new byte[0]));
+            map.forEach((key, value) -> {
+                document.set(key, value);
+                final List<String> comments = map.getModel().getCommentLines().get(key);
+                if (comments != null) {
+                    document.getBlock(key).setComments(comments);
+                }
+            });
+            Assertions.assertEquals(document.dump(), Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testAtomicWriteSkipsUnchanged() throws IOException, ReflectiveOperationException {
+        final Path file = new File(System.getProperty("java.io.tmpdir"), "test_atomic_write.yml").toPath();
+        Files.deleteIfExists(file);
+        final byte[] contents = "test: value\n".getBytes(StandardCharsets.UTF_8);
+
+        Assertions.assertTrue(AtomicFileWriter.write(file, contents, true));
+        Assertions.assertFalse(AtomicFileWriter.write(file, contents, false));
+        Assertions.assertTrue(AtomicFileWriter.write(file, "test: changed\n".getBytes(StandardCharsets.UTF_8), false));
+
+        // Files changed on disk since they were last written are rewritten
+        Files.write(file, new byte[0]);
+        Assertions.assertTrue(AtomicFileWriter.write(file, contents, false));
+        Assertions.assertArrayEquals(contents, Files.readAllBytes(file));
+
+        // Files changed on disk to the contents being written, such as ones loaded and saved back, are not rewritten
+        final byte[] yaml = Annotaml.create(new TestYamlFile()).getYamlObjectMap().toBytes();
+        Files.write(file, yaml);
+        Annotaml.create(file, TestYamlFile.class);
+        Assertions.assertFalse(AtomicFileWriter.write(file, yaml, false));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testAtomicWriteSkipsUnchangedBeyondRemembered() throws IOException {
+        final Path directory = Files.createTempDirectory("annotaml_atomic_many");
+        final int files = 2048;
+
+        // More files than there are remembered states are saved, so the first of them are forgotten by the second pass
+        for (int i = 0; i < files; i++) {
+            final byte[] contents = ("test: value" + i + "\n").getBytes(StandardCharsets.UTF_8);
+            Assertions.assertTrue(AtomicFileWriter.write(directory.resolve("file_" + i + ".yml"), contents, false));
+        }
+        for (int i = 0; i < files; i++) {
+            final byte[] contents = ("test: value" + i + "\n").getBytes(StandardCharsets.UTF_8);
+            Assertions.assertFalse(AtomicFileWriter.write(directory.resolve("file_" + i + ".yml"), contents, false),
+                    "file_" + i + ".yml was written again");
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (final Path path : paths.collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testAtomicWriteKeepsLinksAndPermissions() throws IOException {
+        Assumptions.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"),
+                "POSIX permissions are not supported");
+        final Path directory = Files.createTempDirectory("annotaml_atomic_link");
+        final Path file = directory.resolve("config.yml");
+        Files.writeString(file, "test: old\n");
+        final Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r--r--");
+        Files.setPosixFilePermissions(file, permissions);
+        final Path link = Files.createSymbolicLink(directory.resolve("link.yml"), file);
+
+        // The linked file is replaced, keeping its permissions, and the link is left in place
+        final byte[] contents = "test: new\n".getBytes(StandardCharsets.UTF_8);
+        Assertions.assertTrue(AtomicFileWriter.write(link, contents, false));
+        Assertions.assertTrue(Files.isSymbolicLink(link));
+        Assertions.assertArrayEquals(contents, Files.readAllBytes(file));
+        Assertions.assertEquals(permissions, Files.getPosixFilePermissions(file));
+    }
+
+    @Test
+    public void testAtomicWriteCreatesWithDefaultPermissions() throws IOException {
+        Assumptions.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"),
+                "POSIX permissions are not supported");
+        final Path directory = Files.createTempDirectory("annotaml_atomic_new");
+        final Path plain = Files.createFile(directory.resolve("plain.yml"));
+        final Path file = directory.resolve("config.yml");
+
+        // New files get the same permissions as a file created directly, as limited by the umask
+        Assertions.assertTrue(AtomicFileWriter.write(file, "test: new\n".getBytes(StandardCharsets.UTF_8), false));
+        Assertions.assertEquals(Files.getPosixFilePermissions(plain), Files.getPosixFilePermissions(file));
+    }
+
+    @Test
+    public void testSaveAsync() throws IOException {
+        final File file = new File(System.getProperty("java.io.tmpdir"), "test_save_async.yml");
+        final Annotaml<TestYamlFile> annotaml = Annotaml.create(new TestYamlFile());
+        try (AnnotamlWriter writer = AnnotamlWriter.create(2)) {
+            for (int i = 0; i < 10; i++) {
+                writer.save(annotaml, file);
+            }
+            writer.flush();
+            Assertions.assertArrayEquals(annotaml.getYamlObjectMap().toBytes(), Files.readAllBytes(file.toPath()));
+        }
+        Assertions.assertDoesNotThrow(() -> annotaml.saveAsync(file).join());
+    }
+
+    @Test
+    public void testSaveAsyncFailuresNamePaths() throws IOException {
+        // Files cannot be created under a regular file
+        final Path parent = Files.createTempFile("annotaml_save_failure", ".yml");
+        final File first = parent.resolve("first.yml").toFile();
+        final File second = parent.resolve("second.yml").toFile();
+        final Annotaml<TestYamlFile> annotaml = Annotaml.create(new TestYamlFile());
+        try (AnnotamlWriter writer = AnnotamlWriter.create(2)) {
+            writer.save(annotaml, first);
+            writer.save(annotaml, second);
+            final IOException failure = Assertions.assertThrows(IOException.class, writer::flush);
+            Assertions.assertEquals(1, failure.getSuppressed().length);
+            final Set<String> messages = Set.of(failure.getMessage(), failure.getSuppressed()[0].getMessage());
+            Assertions.assertEquals(Set.of("Failed to save " + first.toPath().toAbsolutePath().normalize(),
+                    "Failed to save " + second.toPath().toAbsolutePath().normalize()), messages);
+        } finally {
+            Files.delete(parent);
+        }
+    }
+
+    @Test
+    public void testSaveAsyncSnapshotsContents() throws IOException {
+        final File file = new File(System.getProperty("java.io.tmpdir"), "test_save_async_snapshot.yml");
+        final TestYamlFile object = new TestYamlFile();
+        object.list = new ArrayList<>(List.of("first"));
+        final Annotaml<TestYamlFile> annotaml = Annotaml.create(object);
+        final byte[] expected = annotaml.getYamlObjectMap().toBytes();
+        try (AnnotamlWriter writer = AnnotamlWriter.create(1)) {
+            writer.save(annotaml, file);
+
+            // Changes made once the save is queued are not written
+            object.list.add("second");
+            writer.flush();
+            Assertions.assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+        }
+    }
+
+    @Test
+    public void testReloadChangedKeys() throws IOException, ReflectiveOperationException {
+        final Annotaml<TestYamlFile> annotaml = Annotaml.create(new TestYamlFile());
+        final String yaml = new String(annotaml.getYamlObjectMap().toBytes(), StandardCharsets.UTF_8);
+        final List<Set<String>> notified = new ArrayList<>();
+        annotaml.addListener((reloaded, changedKeys) -> notified.add(changedKeys));
+
+        // Reloading the same values changes nothing
+        Assertions.assertTrue(annotaml.reload(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8))).isEmpty());
+        Assertions.assertTrue(notified.isEmpty());
+
+        // Only the changed key is reported and applied
+        final Set<String> changedKeys = annotaml.reload(new ByteArrayInputStream(yaml.replace("test2: 2", "test2: 3")
+                .getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(Set.of("test2"), changedKeys);
+        Assertions.assertEquals(List.of(changedKeys), notified);
+
+        final TestYamlFile live = new TestYamlFile();
+        live.test = "live";
+        annotaml.apply(live, changedKeys);
+        Assertions.assertEquals(3, live.test2);
+        Assertions.assertEquals("live", live.test);
+    }
+
+    @Test
+    public void testReloadKeepsCreationDefaults() throws IOException, ReflectiveOperationException {
+        final Path file = Files.createTempFile("annotaml_reload_defaults", ".yml");
+        Files.writeString(file, "test: loaded\n", StandardCharsets.UTF_8);
+        try {
+            final TestYamlFile defaults = new TestYamlFile();
+            defaults.test2 = 7;
+            final Annotaml<TestYamlFile> annotaml = Annotaml.create(file, defaults);
+            final AnnotamlRef<TestYamlFile> ref = AnnotamlRef.of(annotaml);
+            Assertions.assertEquals(7, annotaml.get().test2);
+
+            // Keys missing from the changed file still take the defaults the instance was created with
+            Files.writeString(file, "test: reloaded\n", StandardCharsets.UTF_8);
+            Assertions.assertEquals(Set.of("test"), annotaml.reload(file.toFile()));
+            Assertions.assertEquals(7, annotaml.get().test2);
+            Assertions.assertEquals(Set.of("test"), annotaml.reload(new ByteArrayInputStream(
+                    "test: streamed\n".getBytes(StandardCharsets.UTF_8))));
+            Assertions.assertEquals(7, annotaml.get().test2);
+
+            Assertions.assertEquals(Set.of("test"), ref.reload(file));
+            Assertions.assertEquals(7, ref.get().test2);
+            Assertions.assertEquals("reloaded", ref.get().test);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testWatchReloads() throws IOException, ReflectiveOperationException, InterruptedException,
+            ExecutionException, TimeoutException {
+        final File file = new File(System.getProperty("java.io.tmpdir"), "test_watch.yml");
+        Files.deleteIfExists(file.toPath());
+        final Annotaml<TestYamlRootedMapFile> annotaml = Annotaml.create(file, TestYamlRootedMapFile.class);
+
+        final CompletableFuture<Map<String, String>> reloaded = new CompletableFuture<>();
+        final CompletableFuture<Exception> failed = new CompletableFuture<>();
+        try (AnnotamlWatcher watcher = AnnotamlWatcher.create(Duration.ofMillis(50))) {
+            // A listener that throws is passed its exception, without stopping other listeners or later reloads
+            watcher.watch(file, annotaml, new AnnotamlWatcher.Listener<>() {
+                @Override
+                public void onReload(@NotNull Annotaml<TestYamlRootedMapFile> annotaml) {
+                    throw new IllegalStateException("Listener failure");
+                }
+
+                @Override
+                public void onError(@NotNull Exception exception) {
+                    failed.complete(exception);
+                }
+            });
+            watcher.watch(file, annotaml, reload -> {
+                try {
+                    reloaded.complete(reload.get().rootedMap);
+                } catch (ReflectiveOperationException e) {
+                    reloaded.completeExceptionally(e);
+                }
+            });
+
+            // The new contents differ in size, so the change is seen regardless of timestamp granularity
+            Files.writeString(file.toPath(), "changed: value\n", StandardCharsets.UTF_8);
+            Assertions.assertEquals("value", reloaded.get(30, TimeUnit.SECONDS).get("changed"));
+            Assertions.assertEquals("Listener failure", failed.get(30, TimeUnit.SECONDS).getMessage());
+        }
+    }
+
+    @Test
+    public void testWatchIgnoresOwnSaves() throws IOException, ReflectiveOperationException, InterruptedException,
+            ExecutionException, TimeoutException {
+        final Path file = Files.createTempFile("annotaml_watch_save", ".yml");
+        // Saving reformats the file, so its size changes and the watcher is signalled
+        Files.writeString(file, "loaded:    value\n", StandardCharsets.UTF_8);
+        final AtomicInteger parses = new AtomicInteger();
+        final AnnotamlMetrics metrics = (phase, objectClass, source, nanos, bytes, keys) -> {
+            if (phase == AnnotamlMetrics.Phase.PARSE && file.equals(source)) {
+                parses.incrementAndGet();
+            }
+        };
+        Annotaml.addMetrics(metrics);
+        try {
+            final Annotaml<TestYamlRootedMapFile> annotaml = Annotaml.create(file, TestYamlRootedMapFile.class);
+            final CompletableFuture<Map<String, String>> reloaded = new CompletableFuture<>();
+            try (AnnotamlWatcher watcher = AnnotamlWatcher.create(Duration.ofMillis(50))) {
+                watcher.watch(file.toFile(), annotaml, reload -> {
+                    try {
+                        reloaded.complete(reload.get().rootedMap);
+                    } catch (ReflectiveOperationException e) {
+                        reloaded.completeExceptionally(e);
+                    }
+                });
+
+                parses.set(0);
+                annotaml.save(file.toFile());
+                Thread.sleep(500);
+                Assertions.assertEquals(0, parses.get());
+
+                Files.writeString(file, "changed: value\n", StandardCharsets.UTF_8);
+                Assertions.assertEquals("value", reloaded.get(30, TimeUnit.SECONDS).get("changed"));
+                Assertions.assertEquals(1, parses.get());
+            }
+        } finally {
+            Annotaml.removeMetrics(metrics);
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testWatchReportsListenerFailures() throws IOException, ReflectiveOperationException,
+            InterruptedException, ExecutionException, TimeoutException {
+        final Path file = Files.createTempFile("annotaml_watch_listener", ".yml");
+        Files.writeString(file, "loaded: value\n", StandardCharsets.UTF_8);
+        try {
+            final Annotaml<TestYamlRootedMapFile> annotaml = Annotaml.create(file, TestYamlRootedMapFile.class);
+            annotaml.addListener((changed, changedKeys) -> {
+                throw new IllegalStateException("Change listener failure");
+            });
+
+            final CompletableFuture<Map<String, String>> reloaded = new CompletableFuture<>();
+            final CompletableFuture<RuntimeException> failed = new CompletableFuture<>();
+            final List<Exception> readErrors = new CopyOnWriteArrayList<>();
+            try (AnnotamlWatcher watcher = AnnotamlWatcher.create(Duration.ofMillis(50))) {
+                watcher.watch(file.toFile(), annotaml, new AnnotamlWatcher.Listener<>() {
+                    @Override
+                    public void onReload(@NotNull Annotaml<TestYamlRootedMapFile> annotaml) {
+                        try {
+                            reloaded.complete(annotaml.get().rootedMap);
+                        } catch (ReflectiveOperationException e) {
+                            reloaded.completeExceptionally(e);
+                        }
+                    }
+
+                    @Override
+                    public void onError(@NotNull Exception exception) {
+                        readErrors.add(exception);
+                    }
+
+                    @Override
+                    public void onListenerError(@NotNull RuntimeException exception) {
+                        failed.complete(exception);
+                    }
+                });
+
+                // The change listener failing does not stop the reload from completing
+                Files.writeString(file, "changed: value\n", StandardCharsets.UTF_8);
+                Assertions.assertEquals("value", reloaded.get(30, TimeUnit.SECONDS).get("changed"));
+                Assertions.assertEquals("Change listener failure", failed.get(30, TimeUnit.SECONDS).getMessage());
+                Assertions.assertEquals(List.of(), readErrors);
+            }
+            Assertions.assertEquals(Map.of("changed", "value"), annotaml.get().rootedMap);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testWatchCatchesUpWithChangesSinceLoad() throws IOException, ReflectiveOperationException {
+        final File file = new File(System.getProperty("java.io.tmpdir"), "test_watch_catch_up.yml");
+        Files.writeString(file.toPath(), "loaded: value\n", StandardCharsets.UTF_8);
+        try {
+            final Annotaml<TestYamlRootedMapFile> annotaml = Annotaml.create(file, TestYamlRootedMapFile.class);
+
+            // Changed after the load but before the watch, so no change event is signalled for it
+            Files.writeString(file.toPath(), "changed: later value\n", StandardCharsets.UTF_8);
+            final List<Map<String, String>> reloads = new ArrayList<>();
+            try (AnnotamlWatcher watcher = AnnotamlWatcher.create(Duration.ofMillis(50))) {
+                watcher.watch(file, annotaml, reload -> {
+                    try {
+                        reloads.add(reload.get().rootedMap);
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            }
+            Assertions.assertEquals(Map.of("changed", "later value"), annotaml.get().rootedMap);
+            Assertions.assertEquals(1, reloads.size());
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Test
+    public void testLoadAll() throws IOException {
+        final Path directory = Files.createTempDirectory("annotaml_load_all");
+        for (int i = 0; i < 8; i++) {
+            Files.writeString(directory.resolve("file_" + i + ".yml"), "key: value" + i + "\n");
+        }
+        Files.writeString(directory.resolve("ignored.txt"), "not: yaml\n");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Map<Path, TestYamlRootedMapFile> files = Annotaml.loadAll(directory, TestYamlRootedMapFile.class, executor);
+            Assertions.assertEquals(8, files.size());
+            Assertions.assertEquals("value3", files.get(directory.resolve("file_3.yml")).rootedMap.get("key"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSaveAll() throws IOException {
+        final Path directory = Files.createTempDirectory("annotaml_save_all");
+        final Map<Path, TestYamlRootedMapFile> objects = new LinkedHashMap<>();
+        for (int i = 0; i < 64; i++) {
+            final TestYamlRootedMapFile object = new TestYamlRootedMapFile();
+            object.rootedMap = Map.of("key", "value" + i);
+            objects.put(directory.resolve("file_" + i + ".yml"), object);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Annotaml.saveAll(objects, executor);
+            final Map<Path, TestYamlRootedMapFile> files = Annotaml.loadAll(directory, TestYamlRootedMapFile.class, executor);
+            Assertions.assertEquals(64, files.size());
+            Assertions.assertEquals("value42", files.get(directory.resolve("file_42.yml")).rootedMap.get("key"));
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Annotaml.saveAll(
+                Map.of(directory.resolve("invalid.yml"), "not a yaml file"), Runnable::run));
+
+        // Objects rejected by a shut down executor fail the save, rather than holding their place in the queue
+        final Map<Path, TestYamlRootedMapFile> rejected = new LinkedHashMap<>();
+        for (int i = 0; i < 512; i++) {
+            rejected.put(directory.resolve("rejected_" + i + ".yml"), new TestYamlRootedMapFile());
+        }
+        try (AnnotamlWriter writer = AnnotamlWriter.create(1)) {
+            final IOException failure = Assertions.assertThrows(IOException.class,
+                    () -> Annotaml.saveAll(rejected, executor, writer));
+            Assertions.assertTrue(failure.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testReadLargeFile() throws IOException, ReflectiveOperationException {
+        final Path file = Files.createTempFile("annotaml_large", ".yml");
+        final StringBuilder yaml = new StringBuilder();
+        for (int i = 0; yaml.length() < FileInput.MAPPING_THRESHOLD * 2; i++) {
+            yaml.append("key").append(i).append(": value with some padding ").append(i).append('\n');
+        }
+        Files.writeString(file, yaml, StandardCharsets.UTF_8);
+
+        final Annotaml<TestYamlRootedMapFile> annotaml = Annotaml.create(file, TestYamlRootedMapFile.class);
+        final TestYamlRootedMapFile rootedMapFile = annotaml.get();
+        Assertions.assertEquals("value with some padding 0", rootedMapFile.rootedMap.get("key0"));
+        Assertions.assertEquals(yaml.toString().split("\n").length, rootedMapFile.rootedMap.size());
+
+        // Files parsed in full are read onto the heap rather than mapped, so they can be replaced straight away
+        Files.writeString(file, "key0: changed\n", StandardCharsets.UTF_8);
+        annotaml.save(file.toFile());
+        Files.delete(file);
+    }
+
+    @Test
+    public void testCachedSnapshot() throws IOException, ReflectiveOperationException {
+        final Annotaml<TestYamlCachedFile> annotaml = Annotaml.create(new TestYamlCachedFile());
+        final TestYamlCachedFile snapshot = annotaml.get();
+        Assertions.assertSame(snapshot, annotaml.get());
+
+        // Reloading with changed values publishes a new snapshot
+        annotaml.reload(new ByteArrayInputStream("test: changed\n".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertNotSame(snapshot, annotaml.get());
+        Assertions.assertEquals("changed", annotaml.get().test);
+    }
+
+    @Test
+    public void testMutableSnapshotCopies() throws IOException, ReflectiveOperationException {
+        final Annotaml<TestYamlMutableFile> annotaml = Annotaml.create(new TestYamlMutableFile());
+        final TestYamlMutableFile copy = annotaml.get();
+        copy.items.add("second");
+        copy.counts.put("second", 2);
+        copy.numbers[0] = 5;
+        copy.limits.max = 20;
+
+        // Modifying a copy must not change the cached object that later copies are made from
+        final TestYamlMutableFile next = annotaml.get();
+        Assertions.assertNotSame(copy, next);
+        Assertions.assertEquals(List.of("first"), next.items);
+        Assertions.assertEquals(Map.of("first", 1), next.counts);
+        Assertions.assertArrayEquals(new int[]{1, 2}, next.numbers);
+        Assertions.assertEquals(10, next.limits.max);
+    }
+
+    @Test
+    public void testNestedSection() throws IOException, ReflectiveOperationException {
+        final String yaml = new String(Annotaml.create(new TestYamlNestedFile()).getYamlObjectMap().toBytes(),
+                StandardCharsets.UTF_8);
+        Assertions.assertTrue(yaml.contains("database:\n  host: localhost\n  port: 3306\n  credentials:\n    user: root\n"));
+
+        final TestYamlNestedFile nestedFile = Annotaml.create(TestYamlNestedFile.class, new ByteArrayInputStream(
+                "database:\n  port: 5432\n  credentials:\n    user: admin\n".getBytes(StandardCharsets.UTF_8))).get();
+        Assertions.assertEquals("nested", nestedFile.name);
+        Assertions.assertEquals("localhost", nestedFile.database.host);
+        Assertions.assertEquals(5432, nestedFile.database.port);
+        Assertions.assertEquals("admin", nestedFile.database.user);
+    }
+
+    @Test
+    public void testBinarySnapshot() throws IOException, ReflectiveOperationException {
+        final Path file = Files.createTempFile("annotaml_snapshot", ".yml");
+        Files.writeString(file, "name: cached\ndatabase:\n  port: 5432\n", StandardCharsets.UTF_8);
+        final Map<AnnotamlMetrics.Phase, Long> phases = new ConcurrentHashMap<>();
+        final Set<Path> sources = ConcurrentHashMap.newKeySet();
+        final AnnotamlMetrics metrics = (phase, objectClass, source, nanos, bytes, keys) -> {
+            if (objectClass == TestYamlSnapshotFile.class) {
+                phases.put(phase, bytes);
+                if (phase == AnnotamlMetrics.Phase.READ || phase == AnnotamlMetrics.Phase.APPLY) {
+                    sources.add(source);
+                }
+            }
+        };
+        Annotaml.addMetrics(metrics);
+        try {
+            // Parsing the file writes a snapshot
+            final TestYamlSnapshotFile parsed = Annotaml.create(file, TestYamlSnapshotFile.class).get();
+            Assertions.assertTrue(phases.containsKey(AnnotamlMetrics.Phase.PARSE));
+            Assertions.assertTrue(Files.exists(SnapshotCache.locate(file)));
+
+            // Later loads read from the snapshot without parsing, recording their phases against the file
+            phases.clear();
+            final TestYamlSnapshotFile loaded = Annotaml.create(file, TestYamlSnapshotFile.class).get();
+            Assertions.assertFalse(phases.containsKey(AnnotamlMetrics.Phase.PARSE));
+            Assertions.assertEquals(Files.size(file), phases.get(AnnotamlMetrics.Phase.READ));
+            Assertions.assertEquals(Set.of(file), sources);
+            Assertions.assertEquals(parsed.name, loaded.name);
+            Assertions.assertEquals(5432, loaded.database.port);
+            Assertions.assertEquals("root", loaded.database.user);
+
+            // Changing the file invalidates the snapshot
+            phases.clear();
+            Files.writeString(file, "name: changed\n", StandardCharsets.UTF_8);
+            Assertions.assertEquals("changed", Annotaml.create(file, TestYamlSnapshotFile.class).get().name);
+            Assertions.assertTrue(phases.containsKey(AnnotamlMetrics.Phase.PARSE));
+        } finally {
+            Annotaml.removeMetrics(metrics);
+            Files.deleteIfExists(SnapshotCache.locate(file));
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testBinarySnapshotValidation() throws IOException, ReflectiveOperationException {
+        final Path file = Files.createTempFile("annotaml_snapshot_check", ".yml");
+        try {
+            // Files changed without changing their size or modification time are caught by their hash while the
+            // snapshot was taken too soon after the modification to trust it
+            Files.writeString(file, "name: first\n", StandardCharsets.UTF_8);
+            final FileTime recent = Files.getLastModifiedTime(file);
+            Assertions.assertEquals("first", Annotaml.create(file, TestYamlSnapshotFile.class).get().name);
+            Files.writeString(file, "name: other\n", StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(file, recent);
+            Assertions.assertEquals("other", Annotaml.create(file, TestYamlSnapshotFile.class).get().name);
+
+            // Otherwise the size and modification time are trusted, and the file is not read
+            final FileTime old = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+            Files.writeString(file, "name: third\n", StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(file, old);
+            Assertions.assertEquals("third", Annotaml.create(file, TestYamlSnapshotFile.class).get().name);
+            Files.writeString(file, "name: stale\n", StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(file, old);
+            Assertions.assertEquals("third", Annotaml.create(file, TestYamlSnapshotFile.class).get().name);
+        } finally {
+            Files.deleteIfExists(SnapshotCache.locate(file));
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMultiDocumentStream() throws IOException, ReflectiveOperationException {
+        final List<TestYamlCachedFile> objects = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final TestYamlCachedFile object = new TestYamlCachedFile();
+            object.test = "document " + i;
+            objects.add(object);
+        }
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Annotaml.writeAll(objects, output);
+        Assertions.assertEquals(2, output.toString(StandardCharsets.UTF_8).split("\n---").length - 1);
+
+        try (Stream<TestYamlCachedFile> stream = Annotaml.stream(TestYamlCachedFile.class,
+                new ByteArrayInputStream(output.toByteArray()))) {
+            final List<TestYamlCachedFile> read = stream.collect(Collectors.toList());
+            Assertions.assertEquals(3, read.size());
+            Assertions.assertEquals("document 2", read.get(2).test);
+            Assertions.assertEquals(List.of("test", "test2"), read.get(0).list);
+        }
+
+        // Documents are read lazily, so those before a malformed one are still returned
+        final Iterator<TestYamlCachedFile> documents = Annotaml.stream(TestYamlCachedFile.class,
+                new ByteArrayInputStream("test: first\n---\n- not a mapping\n".getBytes(StandardCharsets.UTF_8)))
+                .iterator();
+        Assertions.assertEquals("first", documents.next().test);
+        Assertions.assertThrows(UncheckedIOException.class, documents::next);
+    }
+
+    @Test
+    public void testMultiDocumentStreamWithoutDocuments() throws ReflectiveOperationException {
+        for (final String yaml : List.of("", "# Only a comment\n")) {
+            try (Stream<TestYamlRootedMapFile> stream = Annotaml.stream(TestYamlRootedMapFile.class,
+                    new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)))) {
+                Assertions.assertEquals(0, stream.count());
+            }
+        }
+
+        // Empty documents are read as documents, so rooted maps do not keep their default entries
+        try (Stream<TestYamlRootedMapFile> stream = Annotaml.stream(TestYamlRootedMapFile.class,
+                new ByteArrayInputStream("---\n---\nkey: value\n".getBytes(StandardCharsets.UTF_8)))) {
+            final List<Map<String, String>> maps = stream.map(file -> file.rootedMap).collect(Collectors.toList());
+            Assertions.assertEquals(List.of(Map.of(), Map.of("key", "value")), maps);
+        }
+    }
+
+    @Test
+    public void testLazyRootedMap() throws IOException, ReflectiveOperationException {
+        final Path file = Files.createTempFile("annotaml_lazy", ".yml");
+        Files.writeString(file, "# Lookup table\nfirst: 1\n\"quoted: key\": [a, b]\nnested:\n  inner: value\n"
+                + "  list:\n    - x\nlast: |\n  text\n", StandardCharsets.UTF_8);
+
+        // Only the keys are indexed, and values are parsed when got
+        final Annotaml<TestYamlLazyMapFile> annotaml = Annotaml.create(file, TestYamlLazyMapFile.class);
+        final Map<String, Object> entries = annotaml.get().entries;
+        Assertions.assertTrue(entries instanceof LazyRootedMap);
+        Assertions.assertEquals(List.of("first", "quoted: key", "nested", "last"), new ArrayList<>(entries.keySet()));
+        Assertions.assertEquals(1, entries.get("first"));
+        Assertions.assertEquals(List.of("a", "b"), entries.get("quoted: key"));
+        Assertions.assertEquals(Map.of("inner", "value", "list", List.of("x")), entries.get("nested"));
+        Assertions.assertEquals("text\n", entries.get("last"));
+        Assertions.assertNull(entries.get("missing"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> entries.put("first", 2));
+
+        // Entries are read from the file, so once it is replaced only unchanged entries can be read
+        Files.writeString(file, "first: 2\n\"quoted: key\": [a, b]\nnested:\n  inner: value\n  list:\n    - x\n",
+                StandardCharsets.UTF_8);
+        Assertions.assertEquals(List.of("a", "b"), entries.get("quoted: key"));
+        Assertions.assertThrows(UncheckedIOException.class, () -> entries.get("first"));
+
+        // Changed entries are found by comparing their YAML
+        Assertions.assertEquals(Set.of("first", "last"), annotaml.reload(file.toFile()));
+
+        // Files that are not plain block mappings are read in full
+        Files.writeString(file, "{first: 3}\n", StandardCharsets.UTF_8);
+        final Map<String, Object> flow = Annotaml.create(file, TestYamlLazyMapFile.class).get().entries;
+        Assertions.assertFalse(flow instanceof LazyRootedMap);
+        Assertions.assertEquals(3, flow.get("first"));
+    }
+
+    @Test
+    public void testLazyRootedMapSavedOverItsFile() throws IOException, ReflectiveOperationException {
+        final Path file = Files.createTempFile("annotaml_lazy_save", ".yml");
+        Files.writeString(file, "# Hand written\nfirst:   'one'   # trailing comment\nsecond: [ 1,  2 ]\n\n"
+                + "third:\n    deeply:   indented\n", StandardCharsets.UTF_8);
+        final Annotaml<TestYamlLazyMapFile> annotaml = Annotaml.create(file, TestYamlLazyMapFile.class);
+        final Map<String, Object> entries = annotaml.get().entries;
+        Assertions.assertTrue(entries instanceof LazyRootedMap);
+
+        // Saving reformats every entry, and the map is indexed again from what was written
+        annotaml.save(file.toFile());
+        Assertions.assertEquals("one", entries.get("first"));
+        Assertions.assertEquals(List.of(1, 2), entries.get("second"));
+        Assertions.assertEquals(Map.of("deeply", "indented"), entries.get("third"));
+        final Map<String, Object> copy = new LinkedHashMap<>(entries);
+        Assertions.assertEquals(List.of("first", "second", "third"), new ArrayList<>(copy.keySet()));
+        Assertions.assertEquals(Map.of("deeply", "indented"), copy.get("third"));
+
+        // Reading the saved file back finds nothing changed
+        Assertions.assertEquals(Set.of(), annotaml.reload(file.toFile()));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testSaveAfterLazyMappedLoad() throws IOException, ReflectiveOperationException {
+        final Path file = Files.createTempFile("annotaml_lazy_mapped", ".yml");
+        final StringBuilder yaml = new StringBuilder();
+        for (int i = 0; yaml.length() < FileInput.MAPPING_THRESHOLD * 2; i++) {
+            yaml.append("key").append(i).append(": value with some padding ").append(i).append('\n');
+        }
+        Files.writeString(file, yaml, StandardCharsets.UTF_8);
+
+        // The lazy map only keeps its index of the mapped file, so the file can be replaced while the map is in use
+        final Annotaml<TestYamlLazyMapFile> annotaml = Annotaml.create(file, TestYamlLazyMapFile.class);
+        final Map<String, Object> entries = annotaml.get().entries;
+        Assertions.assertTrue(entries instanceof LazyRootedMap);
+        annotaml.save(file.toFile());
+        Assertions.assertEquals("value with some padding 0", entries.get("key0"));
+        Assertions.assertEquals("value with some padding 0",
+                Annotaml.create(file, TestYamlLazyMapFile.class).get().entries.get("key0"));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testCompactMap() throws IOException, ReflectiveOperationException {
+        final Annotaml<TestYamlCompactFile> annotaml = Annotaml.create(TestYamlCompactFile.class,
+                new ByteArrayInputStream("lookup:\n  b: 1\n  a: two\n".getBytes(StandardCharsets.UTF_8)));
+        final TestYamlCompactFile compactFile = annotaml.get();
+        Assertions.assertTrue(compactFile.lookup instanceof CompactMap);
+
+        // The read values are only held once, by the compact map shared with the read map
+        Assertions.assertSame(annotaml.getYamlObjectMap().get("lookup"), compactFile.lookup);
+        Assertions.assertEquals(List.of("b", "a"), new ArrayList<>(compactFile.lookup.keySet()));
+        Assertions.assertEquals(1, compactFile.lookup.get("b"));
+        Assertions.assertEquals(Map.of("b", 1, "a", "two"), compactFile.lookup);
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> compactFile.lookup.put("c", 3));
+
+        // Compact maps are written like any other map
+        final String yaml = new String(Annotaml.create(compactFile).getYamlObjectMap().toBytes(), StandardCharsets.UTF_8);
+        Assertions.assertTrue(yaml.contains("lookup:\n  b: 1\n  a: two\n"));
+
+        // Keys are interned, and every entry can be found
+        final Map<String, Integer> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.put(new StringBuilder("key").append(i).toString(), i);
+        }
+        final CompactMap<Integer> compact = CompactMap.copyOf(entries);
+        Assertions.assertEquals(entries, compact);
+        Assertions.assertSame("key0", compact.keySet().iterator().next());
+        Assertions.assertNull(compact.get("key1000"));
+    }
+
+    @Test
+    public void testMetrics() throws IOException, ReflectiveOperationException {
+        final HistogramMetrics metrics = new HistogramMetrics();
+        Annotaml.addMetrics(metrics);
+        try {
+            final Path file = Files.createTempFile("annotaml_metrics", ".yml");
+            Files.writeString(file, "test: metrics\n", StandardCharsets.UTF_8);
+            final Annotaml<TestYamlFile> annotaml = Annotaml.create(file, TestYamlFile.class);
+            Assertions.assertEquals("metrics", annotaml.get().test);
+            annotaml.save(file.toFile());
+        } finally {
+            Annotaml.removeMetrics(metrics);
+        }
+
+        final Map<AnnotamlMetrics.Phase, HistogramMetrics.Snapshot> snapshots = metrics.getSnapshots(TestYamlFile.class);
+        for (final AnnotamlMetrics.Phase phase : AnnotamlMetrics.Phase.values()) {
+            Assertions.assertTrue(snapshots.get(phase).getCount() > 0, phase.name());
+            Assertions.assertTrue(snapshots.get(phase).getPercentileNanos(100) >= snapshots.get(phase).getMeanNanos());
+        }
+        Assertions.assertEquals(14, snapshots.get(AnnotamlMetrics.Phase.PARSE).getBytes());
+        Assertions.assertEquals(0, metrics.getSnapshot(TestYamlCachedFile.class, AnnotamlMetrics.Phase.PARSE).getCount());
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws IOException, ReflectiveOperationException {
+        final Path file = Files.createTempFile("annotaml_jfr", ".yml");
+        final Path dump = Files.createTempFile("annotaml_jfr", ".jfr");
+        Files.writeString(file, "test: recorded\n", StandardCharsets.UTF_8);
+        try (Recording recording = new Recording()) {
+            for (final String event : List.of("AnnotamlLoad", "AnnotamlSave", "AnnotamlReflectInit")) {
+                recording.enable("net.william278.annotaml." + event).withoutThreshold();
+            }
+            recording.start();
+            final Annotaml<TestYamlFile> annotaml = Annotaml.create(file, TestYamlFile.class);
+            annotaml.get();
+            annotaml.save(file.toFile());
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        final RecordedEvent load = events.stream()
+                .filter(event -> event.getEventType().getName().endsWith("AnnotamlLoad"))
+                .findFirst().orElseThrow();
+        Assertions.assertEquals(TestYamlFile.class.getName(), load.getString("className"));
+        Assertions.assertEquals(file.toString(), load.getString("path"));
+        Assertions.assertEquals(15, load.getLong("bytes"));
+        Assertions.assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().endsWith("AnnotamlSave")));
+        Assertions.assertTrue(events.stream()
+                .anyMatch(event -> event.getEventType().getName().endsWith("AnnotamlReflectInit")));
+        Files.delete(dump);
+    }
+
+    @Test
+    public void testLiveRef() throws IOException, ReflectiveOperationException, InterruptedException,
+            ExecutionException {
+        final Annotaml<TestYamlFile> annotaml = Annotaml.create(new TestYamlFile());
+        final String yaml = new String(annotaml.getYamlObjectMap().toBytes(), StandardCharsets.UTF_8);
+        final AnnotamlRef<TestYamlFile> ref = AnnotamlRef.of(annotaml);
+
+        // Readers must always see the fields of a single snapshot together
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<CompletableFuture<Void>> readers = new ArrayList<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        for (int i = 0; i < 4; i++) {
+            readers.add(CompletableFuture.runAsync(() -> {
+                while (!done.isDone()) {
+                    try {
+                        final TestYamlFile object = ref.get();
+                        Assertions.assertTrue(object.test2 == 2 || object.test.equals("v" + object.test2));
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }, executor));
+        }
+        try {
+            for (int i = 3; i < 200; i++) {
+                final Set<String> changedKeys = ref.reload(new ByteArrayInputStream(yaml
+                        .replace("test: test", "test: v" + i).replace("test2: 2", "test2: " + i)
+                        .getBytes(StandardCharsets.UTF_8)));
+                Assertions.assertEquals(Set.of("test", "test2"), changedKeys);
+            }
+        } finally {
+            done.complete(null);
+            executor.shutdown();
+        }
+        CompletableFuture.allOf(readers.toArray(new CompletableFuture[0])).get();
+
+        // Updates apply to a deep copy, leaving the published object and its collections untouched
+        final TestYamlFile before = ref.get();
+        final TestYamlFile after = ref.update(object -> {
+            object.test2++;
+            object.test = "v" + object.test2;
+            object.test8.put("test6", "value6");
+            return object;
+        });
+        Assertions.assertEquals(199, before.test2);
+        Assertions.assertFalse(before.test8.containsKey("test6"));
+        Assertions.assertEquals(200, after.test2);
+        Assertions.assertEquals("value6", after.test8.get("test6"));
+        Assertions.assertSame(after, ref.get());
+    }
+
+    @Test
+    public void testPrimitiveArrays() throws IOException, ReflectiveOperationException {
+        final TestYamlStreamedFile streamedFile = Annotaml.create(TestYamlStreamedFile.class, new ByteArrayInputStream(
+                "numbers: [4, 5]\nratios: [1, 2.5, .inf]\n".getBytes(StandardCharsets.UTF_8))).get();
+        Assertions.assertArrayEquals(new int[]{4, 5}, streamedFile.numbers);
+        Assertions.assertArrayEquals(new double[]{1, 2.5, Double.POSITIVE_INFINITY}, streamedFile.ratios);
+
+        // Arrays are written back as sequences and read again unchanged
+        final byte[] yaml = Annotaml.create(streamedFile).getYamlObjectMap().toBytes();
+        final TestYamlStreamedFile reread = Annotaml.create(TestYamlStreamedFile.class, new ByteArrayInputStream(yaml)).get();
+        Assertions.assertArrayEquals(streamedFile.numbers, reread.numbers);
+        Assertions.assertArrayEquals(streamedFile.ratios, reread.ratios);
+
+        // Lists read from documents are unboxed into arrays
+        Assertions.assertArrayEquals(new long[]{1, 2}, (long[]) ValueConverter.of(long[].class, ArrayList.class)
+                .convert(new ArrayList<>(List.of(1, 2))));
+
+        // Sequences that are not all plain numbers fall back to a list of only the elements in the file
+        final TestYamlStreamedFile large = Annotaml.create(TestYamlStreamedFile.class, new ByteArrayInputStream(
+                "ratios: [1, 99999999999999999999]\n".getBytes(StandardCharsets.UTF_8))).get();
+        Assertions.assertArrayEquals(new double[]{1, 1e20}, large.ratios);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Annotaml.create(TestYamlStreamedFile.class,
+                new ByteArrayInputStream("numbers: [1, abc]\n".getBytes(StandardCharsets.UTF_8))).get());
+
+        // Integers out of range of the element type are rejected rather than truncated
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Annotaml.create(TestYamlStreamedFile.class,
+                new ByteArrayInputStream("numbers: [1, 3000000000]\n".getBytes(StandardCharsets.UTF_8))).get());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Annotaml.create(TestYamlStreamedFile.class,
+                new ByteArrayInputStream("numbers: [1.5]\n".getBytes(StandardCharsets.UTF_8))).get());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Annotaml.create(TestYamlStreamedFile.class,
+                new ByteArrayInputStream("numbers: [1e20]\n".getBytes(StandardCharsets.UTF_8))).get());
+        Assertions.assertNull(ValueConverter.of(long[].class, ArrayList.class).convert(new ArrayList<>(List.of(0.5))));
+        Assertions.assertArrayEquals(new int[]{2}, Annotaml.create(TestYamlStreamedFile.class,
+                new ByteArrayInputStream("numbers: [2.0]\n".getBytes(StandardCharsets.UTF_8))).get().numbers);
+    }
+
+    @Test
+    public void testPreload() {
+        Annotaml.preload(TestYamlFile.class, TestYamlNoDefaultsFile.class, TestYamlRootedMapFile.class);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Annotaml.preload(String.class));
+    }
+
+    @Test
+    public void testPrecompiledRoutes() {
+        final YamlClassModel.FieldModel nested = YamlClassModel.of(TestYamlFile.class).getFields().stream()
+                .filter(field -> field.getName().equals("test3"))
+                .findFirst().orElseThrow();
+        Assertions.assertArrayEquals(new String[]{"test3", "nested", "test"}, nested.getPath());
+        Assertions.assertEquals(3, nested.getRoute().length());
+
+        final YamlClassModel.FieldModel rooted = YamlClassModel.of(TestYamlRootedMapFile.class).getFields().get(0);
+        Assertions.assertThrows(IllegalStateException.class, rooted::getRoute);
+    }
+
+    @Test
+    public void testClassModelCache() {
+        Assertions.assertSame(YamlClassModel.of(TestYamlFile.class), YamlClassModel.of(TestYamlFile.class));
+
+        // Sections are only mapped within files, and classes that cannot be mapped fail on every lookup
+        Assertions.assertNotNull(YamlClassModel.ofSection(TestYamlNestedFile.Database.class));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> YamlClassModel.of(TestYamlNestedFile.Database.class));
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> YamlClassModel.of(String.class));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> YamlClassModel.ofSection(String.class));
+        }
+    }
+
+    @Test
+    public void testGeneratedCodec() throws ReflectiveOperationException {
+        final Class<?> codec = Class.forName(TestYamlFile.class.getName() + YamlCodec.SUFFIX);
+        Assertions.assertTrue(YamlCodec.class.isAssignableFrom(codec));
+
+        // Primitive fields are written through the typed setters of the codec, without boxing
+        Assertions.assertNotNull(codec.getDeclaredMethod("setInt", TestYamlFile.class, int.class, int.class));
+        final YamlClassModel.FieldModel field = YamlClassModel.of(TestYamlFile.class).getFields().stream()
+                .filter(model -> model.getName().equals("test2"))
+                .findFirst().orElseThrow();
+        final TestYamlFile object = new TestYamlFile();
+        field.getAccessor().setInt(object, 9);
+        Assertions.assertEquals(9, object.test2);
+
+        // Classes with a private constructor are mapped by reflection instead
+        Assertions.assertThrows(ClassNotFoundException.class,
+                () -> Class.forName(TestYamlNoDefaultsFile.class.getName() + YamlCodec.SUFFIX));
+    }
+
+    @Test
+    public void testReadStreamed() {
+        try (InputStream input = Objects.requireNonNull(getClass().getClassLoader().getResource("file.yml")).openStream()) {
+            final TestYamlStreamedFile readFile = Annotaml.create(TestYamlStreamedFile.class, input).get();
+            Assertions.assertEquals("test", readFile.test);
+            Assertions.assertTrue(readFile.test3);
+            Assertions.assertEquals(TestYamlFile.TestEnum.TEST3, readFile.testCasedEnum);
+            Assertions.assertEquals(3, readFile.test8.size());
+            Assertions.assertEquals("three", readFile.test8.get("test3"));
+            Assertions.assertEquals(7, readFile.missing);
+        } catch (IOException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
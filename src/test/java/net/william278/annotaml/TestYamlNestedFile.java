@@ -0,0 +1,42 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+@YamlFile(header = "Tests for nested sections")
+public class TestYamlNestedFile {
+
+    public String name = "nested";
+    public Database database = new Database();
+
+    public TestYamlNestedFile() {
+    }
+
+    @YamlSection
+    public static class Database {
+
+        public String host = "localhost";
+        public int port = 3306;
+        @YamlKey("credentials.user")
+        public String user = "root";
+
+        public Database() {
+        }
+    }
+}
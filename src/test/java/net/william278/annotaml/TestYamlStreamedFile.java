@@ -0,0 +1,38 @@
+/*
+ * This file is part of Annotaml, licensed under the Apache License 2.0.
+ *
+ *  Copyright (c) William278 <will27528@gmail.com>
+ *  Copyright (c) contributors
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package net.william278.annotaml;
+
+import java.util.TreeMap;
+
+@YamlFile(streamed = true)
+public class TestYamlStreamedFile {
+
+    public String test = "default";
+    @YamlKey("test3.nested.test")
+    public boolean test3 = false;
+    public TestYamlFile.TestEnum testCasedEnum = TestYamlFile.TestEnum.TEST;
+    public TreeMap<String, String> test8 = new TreeMap<>();
+    public int missing = 7;
+    public int[] numbers = {1, 2, 3};
+    public double[] ratios = {0.5};
+
+    public TestYamlStreamedFile() {
+    }
+}